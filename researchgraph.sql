@@ -59,6 +59,7 @@ CREATE TABLE `doi_resolution` (
   `source` varchar(32) DEFAULT NULL,
   `source_url` varchar(64) DEFAULT NULL,
   `doi` varchar(1024) NOT NULL,
+  `doi_hash` bigint(20) DEFAULT NULL,
   `url` varchar(1024) DEFAULT NULL,
   `title` varchar(1024) DEFAULT NULL,
   `year` smallint(5) UNSIGNED DEFAULT NULL,
@@ -91,6 +92,7 @@ ALTER TABLE `doi_autority`
 ALTER TABLE `doi_resolution`
   ADD PRIMARY KEY (`id`),
   ADD UNIQUE KEY `doi` (`doi`),
+  ADD KEY `doi_hash` (`doi_hash`),
   ADD KEY `resolved` (`resolved`);
 
 --
@@ -122,6 +124,16 @@ ALTER TABLE `doi_resolution`
 ALTER TABLE `doi_author`
   ADD CONSTRAINT `doi_author_ibfk_1` FOREIGN KEY (`resolution_id`) REFERENCES `doi_resolution` (`id`) ON DELETE CASCADE ON UPDATE CASCADE;
 
+--
+-- Triggers `doi_resolution`
+--
+DELIMITER $$
+CREATE TRIGGER `doi_resolution_hash_insert` BEFORE INSERT ON `doi_resolution` FOR EACH ROW SET NEW.doi_hash = CONV(LEFT(MD5(LOWER(NEW.doi)), 15), 16, 10)
+$$
+CREATE TRIGGER `doi_resolution_hash_update` BEFORE UPDATE ON `doi_resolution` FOR EACH ROW SET NEW.doi_hash = CONV(LEFT(MD5(LOWER(NEW.doi)), 15), 16, 10)
+$$
+DELIMITER ;
+
 /*!40101 SET CHARACTER_SET_CLIENT=@OLD_CHARACTER_SET_CLIENT */;
 /*!40101 SET CHARACTER_SET_RESULTS=@OLD_CHARACTER_SET_RESULTS */;
 /*!40101 SET COLLATION_CONNECTION=@OLD_COLLATION_CONNECTION */;
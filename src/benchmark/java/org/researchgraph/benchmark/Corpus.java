@@ -0,0 +1,77 @@
+package org.researchgraph.benchmark;
+
+import java.util.Random;
+
+/**
+ * A class to generate identifiers in the shapes found in the source properties
+ *
+ * DOIs are written bare, with the doi: prefix and as doi.org or dx.doi.org URLs, with the suffix
+ * styles of the large publishers. A small part of the values is not a DOI at all.
+ * The corpus is generated from a fixed seed, so every run measures the same values.
+ */
+
+public class Corpus {
+	private static final long SEED = 20170301L;
+
+	private static final String[] DOI_FORMATS = { "%s", "doi:%s", "DOI:%s", "http://dx.doi.org/%s", "https://doi.org/%s", 
+			"http://doi.org/%s", "https://dx.doi.org/%s", " %s\n" };
+	private static final String[] NOT_DOIS = { "", "n/a", "unknown", "http://www.example.org/article", "ISBN 978-3-16-148410-0" };
+	private static final String[] HOSTS = { "researchdata.ands.org.au", "www.nature.com", "www3.interscience.wiley.com", 
+			"web.archive.org", "orcid.org", "www.scopus.com", "purl.org", "figshare.com" };
+
+	private final Random random = new Random(SEED);
+
+	public String[] dois(int size) {
+		String[] dois = new String[size];
+		for (int i = 0; i < size; ++i)
+			dois[i] = 0 == random.nextInt(20) ? NOT_DOIS[random.nextInt(NOT_DOIS.length)] 
+					: String.format(DOI_FORMATS[random.nextInt(DOI_FORMATS.length)], doi());
+
+		return dois;
+	}
+
+	public String[] orcids(int size) {
+		String[] orcids = new String[size];
+		for (int i = 0; i < size; ++i) {
+			String orcid = String.format("%04d-%04d-%04d-%03d%s", random.nextInt(10000), random.nextInt(10000), 
+					random.nextInt(10000), random.nextInt(1000), 0 == random.nextInt(10) ? "X" : Integer.toString(random.nextInt(10)));
+			orcids[i] = random.nextBoolean() ? "http://orcid.org/" + orcid : orcid;
+		}
+
+		return orcids;
+	}
+
+	public String[] urls(int size) {
+		String[] urls = new String[size];
+		for (int i = 0; i < size; ++i) {
+			StringBuilder url = new StringBuilder(random.nextBoolean() ? "https://" : "http://")
+					.append(HOSTS[random.nextInt(HOSTS.length)]);
+			for (int depth = random.nextInt(4); depth > 0; --depth)
+				url.append('/').append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36).substring(0, 4 + random.nextInt(6)));
+			if (random.nextBoolean())
+				url.append("/?key=").append(random.nextInt(1000000));
+			else if (random.nextBoolean())
+				url.append('/');
+
+			urls[i] = url.toString();
+		}
+
+		return urls;
+	}
+
+	public String doi() {
+		String prefix = "10." + (1000 + random.nextInt(9000));
+		switch (random.nextInt(5)) {
+		case 0:
+			return prefix + "/journal.pone." + (100000 + random.nextInt(900000));
+		case 1:
+			return prefix + "/j.cell." + (2000 + random.nextInt(17)) + "." + (1 + random.nextInt(12)) + "." + random.nextInt(1000);
+		case 2:
+			return prefix + "/s" + (40000 + random.nextInt(2000)) + "-0" + (17 + random.nextInt(3)) + "-" + random.nextInt(10000) + "-" + random.nextInt(10);
+		case 3:
+			return prefix + "/" + (char) ('A' + random.nextInt(26)) + random.nextInt(100000) + "." + (char) ('a' + random.nextInt(26));
+		default:
+			return prefix + "/zenodo." + random.nextInt(10000000);
+		}
+	}
+}
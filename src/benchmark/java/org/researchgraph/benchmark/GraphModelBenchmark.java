@@ -0,0 +1,101 @@
+package org.researchgraph.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.researchgraph.graph.GraphKey;
+import org.researchgraph.graph.GraphNode;
+import org.researchgraph.graph.GraphUtils;
+
+/**
+ * JMH benchmark of the graph model, what every imported work and author passes through
+ *
+ * Nodes have the properties of a resolved work. Keys are compared with equal copies,
+ * as a lookup in a map does. Every invocation processes the whole corpus.
+ *
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.class=org.openjdk.jmh.Main -Dbenchmark.args="GraphModelBenchmark -prof gc"
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphModelBenchmark {
+	private static final int CORPUS_SIZE = 10000;
+	private static final String SOURCE = "crossref";
+
+	private String[] dois;
+	private String[] urls;
+	private GraphNode[] nodes;
+	private GraphKey[] keys;
+	private GraphKey[] copies;
+
+	@Setup
+	public void setup() {
+		Corpus corpus = new Corpus();
+
+		dois = new String[CORPUS_SIZE];
+		for (int i = 0; i < CORPUS_SIZE; ++i)
+			dois[i] = corpus.doi();
+		urls = corpus.urls(CORPUS_SIZE);
+
+		nodes = new GraphNode[CORPUS_SIZE];
+		keys = new GraphKey[CORPUS_SIZE];
+		copies = new GraphKey[CORPUS_SIZE];
+		for (int i = 0; i < CORPUS_SIZE; ++i) {
+			nodes[i] = buildNode(i);
+			keys[i] = new GraphKey(SOURCE, GraphUtils.PROPERTY_KEY, dois[i]);
+			copies[i] = new GraphKey(SOURCE, GraphUtils.PROPERTY_KEY, new String(dois[i]));
+		}
+	}
+
+	@Benchmark
+	public void buildNode(Blackhole blackhole) {
+		for (int i = 0; i < CORPUS_SIZE; ++i)
+			blackhole.consume(buildNode(i));
+	}
+
+	@Benchmark
+	public void getProperties(Blackhole blackhole) {
+		for (GraphNode node : nodes)
+			blackhole.consume(node.getProperties());
+	}
+
+	@Benchmark
+	public void keyHashCode(Blackhole blackhole) {
+		for (GraphKey key : copies)
+			blackhole.consume(key.hashCode());
+	}
+
+	@Benchmark
+	public void keyEquals(Blackhole blackhole) {
+		for (int i = 0; i < CORPUS_SIZE; ++i)
+			blackhole.consume(keys[i].equals(copies[i]));
+	}
+
+	private GraphNode buildNode(int i) {
+		return GraphNode.builder()
+				.withKey(SOURCE, dois[i])
+				.withNodeSource(SOURCE)
+				.withNodeType(GraphUtils.TYPE_PUBLICATION)
+				.withProperty(GraphUtils.PROPERTY_DOI, dois[i])
+				.withProperty(GraphUtils.PROPERTY_URL, urls[i])
+				.withProperty(GraphUtils.PROPERTY_TITLE, "A study of " + dois[i])
+				.withProperty(GraphUtils.PROPERTY_PUBLISHED_YEAR, 2000 + i % 17)
+				.withLabel(SOURCE)
+				.withLabel(GraphUtils.TYPE_PUBLICATION)
+				.build();
+	}
+}
@@ -0,0 +1,66 @@
+package org.researchgraph.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.researchgraph.graph.GraphUtils;
+
+/**
+ * JMH benchmark of the identifier extraction, what is done for every property of every scanned node
+ *
+ * Every invocation processes the whole corpus, so the score is corpus passes per second.
+ * Use the gc profiler to see the allocation rate.
+ *
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.class=org.openjdk.jmh.Main -Dbenchmark.args="IdentifierBenchmark -prof gc"
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentifierBenchmark {
+	private static final int CORPUS_SIZE = 10000;
+
+	private String[] dois;
+	private String[] orcids;
+	private String[] urls;
+
+	@Setup
+	public void setup() {
+		Corpus corpus = new Corpus();
+
+		dois = corpus.dois(CORPUS_SIZE);
+		orcids = corpus.orcids(CORPUS_SIZE);
+		urls = corpus.urls(CORPUS_SIZE);
+	}
+
+	@Benchmark
+	public void extractDoi(Blackhole blackhole) {
+		for (String doi : dois)
+			blackhole.consume(GraphUtils.extractDoi(doi));
+	}
+
+	@Benchmark
+	public void extractOrcidId(Blackhole blackhole) {
+		for (String orcid : orcids)
+			blackhole.consume(GraphUtils.extractOrcidId(orcid));
+	}
+
+	@Benchmark
+	public void extractFormalizedUrl(Blackhole blackhole) {
+		for (String url : urls)
+			blackhole.consume(GraphUtils.extractFormalizedUrl(url));
+	}
+}
@@ -0,0 +1,158 @@
+package org.researchgraph.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.researchgraph.graph.Graph;
+import org.researchgraph.graph.GraphKey;
+import org.researchgraph.graph.GraphNode;
+import org.researchgraph.graph.GraphRelationship;
+import org.researchgraph.graph.GraphSchema;
+import org.researchgraph.graph.GraphUtils;
+import org.researchgraph.graph.interfaces.GraphImporter;
+import org.researchgraph.neo4j.Neo4jBatchImporter;
+import org.researchgraph.neo4j.Neo4jDatabase;
+
+/**
+ * Throughput benchmark of the transactional and the batch importers
+ *
+ * Every importer gets a new database with the same source nodes and imports the same synthetic
+ * chunks of works, the way the connector builds them: a work with its authors, linked to the
+ * source nodes referencing it. Time includes opening and closing the database, what populates
+ * deferred indexes of the batch importer.
+ *
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.class=org.researchgraph.benchmark.ImporterBenchmark -Dbenchmark.args="100000 200000"
+ */
+
+public class ImporterBenchmark {
+	private static final String SOURCE = "ands";
+	private static final String CROSSREF = "crossref";
+	private static final String PROPERTY = "doi";
+	private static final String RELATIONSHIP = "relatedTo";
+	private static final int AUTHORS_PER_WORK = 2;
+	private static final int REFERENCES_PER_WORK = 2;
+	private static final int CHUNK_SIZE = 1000;
+
+	public static void main(String[] args) throws Exception {
+		int sources = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int works = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+		List<Graph> chunks = buildChunks(sources, works);
+		long nodes = (long) works * (1 + AUTHORS_PER_WORK);
+		long relationships = (long) works * (AUTHORS_PER_WORK + REFERENCES_PER_WORK);
+
+		System.out.println(String.format("%d source nodes, %d works, %d nodes and %d relationships in %d chunks",
+				sources, works, nodes, relationships, chunks.size()));
+
+		File folder = Files.createTempDirectory("importer-benchmark").toFile();
+		try {
+			for (String importer : new String[] { "transactional", "batch" }) {
+				File storeDir = new File(folder, importer);
+				createSources(storeDir, sources);
+
+				long started = System.nanoTime();
+				if ("batch".equals(importer)) {
+					try (Neo4jBatchImporter batch = new Neo4jBatchImporter(storeDir)) {
+						importChunks(batch, chunks);
+					}
+				} else {
+					GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
+					try {
+						importChunks(new Neo4jDatabase(graphDb), chunks);
+					} finally {
+						graphDb.shutdown();
+					}
+				}
+				long elapsed = Math.max(1, (System.nanoTime() - started) / 1000000);
+
+				System.out.println(String.format("  %-13s %,d ms, %,d nodes/sec, %,d relationships/sec",
+						importer, elapsed, nodes * 1000 / elapsed, relationships * 1000 / elapsed));
+			}
+		} finally {
+			FileUtils.deleteDirectory(folder);
+		}
+	}
+
+	private static void importChunks(GraphImporter importer, List<Graph> chunks) {
+		for (Graph chunk : chunks)
+			importer.importGraph(chunk);
+	}
+
+	private static void createSources(File storeDir, int sources) throws IOException {
+		GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
+		try {
+			Label label = Label.label(SOURCE);
+			for (int from = 0; from < sources; from += CHUNK_SIZE)
+				try (Transaction t = graphDb.beginTx()) {
+					for (int i = from; i < Math.min(from + CHUNK_SIZE, sources); ++i)
+						graphDb.createNode(label).setProperty(PROPERTY, getDoi(i));
+
+					t.success();
+				}
+		} finally {
+			graphDb.shutdown();
+		}
+	}
+
+	private static List<Graph> buildChunks(int sources, int works) {
+		List<Graph> chunks = new ArrayList<Graph>();
+		Graph graph = null;
+		for (int work = 0; work < works; ++work) {
+			if (work % CHUNK_SIZE == 0) {
+				chunks.add(graph = new Graph());
+				graph.setSchemas(Arrays.asList(new GraphSchema(CROSSREF, GraphUtils.PROPERTY_KEY, true),
+						new GraphSchema(CROSSREF, GraphUtils.PROPERTY_DOI, false)));
+			}
+
+			String doi = getDoi(work);
+			GraphNode workNode = GraphNode.builder()
+					.withKey(CROSSREF, "http://dx.doi.org/" + doi)
+					.withLabel(CROSSREF)
+					.withLabel(GraphUtils.TYPE_PUBLICATION)
+					.withProperty(GraphUtils.PROPERTY_DOI, doi)
+					.withProperty(GraphUtils.PROPERTY_TITLE, "Title of " + doi)
+					.withProperty(GraphUtils.PROPERTY_PUBLISHED_YEAR, 1990 + work % 30)
+					.build();
+			graph.addNode(workNode);
+
+			for (int author = 0; author < AUTHORS_PER_WORK; ++author) {
+				GraphNode authorNode = GraphNode.builder()
+						.withKey(CROSSREF, doi + ":Author " + author)
+						.withLabel(CROSSREF)
+						.withLabel(GraphUtils.TYPE_RESEARCHER)
+						.withProperty(GraphUtils.PROPERTY_FULL_NAME, "Author " + author)
+						.build();
+				graph.addNode(authorNode);
+				graph.addRelationship(createRelationship(authorNode.getKey(), workNode.getKey()));
+			}
+
+			// node ids of the source nodes, created first in an empty database
+			for (int reference = 0; reference < REFERENCES_PER_WORK; ++reference)
+				graph.addRelationship(createRelationship(workNode.getKey(), new GraphKey(SOURCE, GraphUtils.PROPERTY_NODE_ID,
+						(long) ((work * 0x9E3779B1L + reference) % sources))));
+		}
+
+		return chunks;
+	}
+
+	private static GraphRelationship createRelationship(GraphKey start, GraphKey end) {
+		return GraphRelationship.builder()
+				.withRelationship(RELATIONSHIP)
+				.withStart(start)
+				.withEnd(end)
+				.build();
+	}
+
+	private static String getDoi(int i) {
+		return "10." + (1000 + i % 9000) + "/journal.pone." + i;
+	}
+}
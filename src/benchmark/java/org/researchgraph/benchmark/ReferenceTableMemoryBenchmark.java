@@ -0,0 +1,95 @@
+package org.researchgraph.benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.researchgraph.connector.ReferenceTable;
+import org.researchgraph.graph.GraphKey;
+
+/**
+ * Memory benchmark of the reference table
+ *
+ * Compares heap used by the ReferenceTable with the HashMap<String, Set<GraphKey>>
+ * used before, for the same synthetic references. Every DOI is referenced twice on average.
+ * The HashMap of 10M references needs about 3.4 GB, so the heap must be at least 4.5 GB.
+ *
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.class=org.researchgraph.benchmark.ReferenceTableMemoryBenchmark -Dbenchmark.args="1000000 10000000"
+ */
+
+public class ReferenceTableMemoryBenchmark {
+	private static final String SOURCE = "ands";
+	private static final int REFERENCES_PER_DOI = 2;
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = { 1000000, 10000000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; ++i)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		for (int size : sizes) {
+			long base = getUsedMemory();
+			Map<String, Set<GraphKey>> map = buildMap(size);
+			long mapMemory = getUsedMemory() - base;
+			int mapSize = map.size();
+			map = null;
+
+			base = getUsedMemory();
+			ReferenceTable table = buildTable(size);
+			long tableMemory = getUsedMemory() - base;
+			int tableSize = table.size();
+			long tableEstimate = table.getMemoryUsage();
+			table = null;
+
+			System.out.println(String.format("%d references, %d DOIs", size, tableSize));
+			System.out.println(String.format("  HashMap<String, Set<GraphKey>>: %,d bytes (%d DOIs, %.1f bytes per reference)",
+					mapMemory, mapSize, (double) mapMemory / size));
+			System.out.println(String.format("  ReferenceTable:                 %,d bytes (%,d bytes allocated, %.1f bytes per reference)",
+					tableMemory, tableEstimate, (double) tableMemory / size));
+		}
+	}
+
+	private static Map<String, Set<GraphKey>> buildMap(int size) {
+		Map<String, Set<GraphKey>> references = new HashMap<String, Set<GraphKey>>();
+		for (int i = 0; i < size; ++i) {
+			String doi = getDoi(i, size);
+			Set<GraphKey> keys = references.get(doi);
+			if (null == keys)
+				references.put(doi, keys = new HashSet<GraphKey>());
+			keys.add(new GraphKey(SOURCE, getKey(i)));
+		}
+
+		return references;
+	}
+
+	private static ReferenceTable buildTable(int size) {
+		ReferenceTable references = new ReferenceTable();
+		for (int i = 0; i < size; ++i)
+			references.add(getDoi(i, size), i);
+
+		return references;
+	}
+
+	private static String getDoi(int reference, int size) {
+		// spread references of the same DOI over the whole input
+		int doi = (int) (((long) reference * 0x9E3779B1L) % (size / REFERENCES_PER_DOI));
+		return "10." + (1000 + doi % 9000) + "/journal.pone." + doi;
+	}
+
+	private static String getKey(int reference) {
+		return "http://researchdata.ands.org.au/view/?key=" + reference;
+	}
+
+	private static long getUsedMemory() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; ++i) {
+			System.gc();
+			Thread.sleep(100);
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
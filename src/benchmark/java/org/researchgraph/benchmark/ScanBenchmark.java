@@ -0,0 +1,108 @@
+package org.researchgraph.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.researchgraph.neo4j.Neo4jDatabase;
+import org.researchgraph.neo4j.interfaces.ProcessProjection;
+
+/**
+ * Throughput benchmark of the source node scans
+ *
+ * The database holds the source nodes with a DOI property and other nodes of a different label,
+ * the way crossref works and authors share the store with the source nodes. Every scan passes the
+ * nodes to a consumer synchronized by one lock, the way the connector consumes them. Every scan
+ * runs twice and the second run is reported, so the store is in the page cache.
+ *
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.class=org.researchgraph.benchmark.ScanBenchmark -Dbenchmark.args="500000 2000000"
+ */
+
+public class ScanBenchmark {
+	private static final String SOURCE = "ands";
+	private static final String OTHER = "crossref";
+	private static final String PROPERTY = "doi";
+	private static final int CHUNK_SIZE = 10000;
+	private static final int PAGE_SIZE = 100000;
+	private static final int[] THREADS = { 2, 4 };
+
+	public static void main(String[] args) throws Exception {
+		int sources = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		int others = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+
+		File folder = Files.createTempDirectory("scan-benchmark").toFile();
+		try {
+			GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(folder);
+			try {
+				createNodes(graphDb, sources, others);
+				Neo4jDatabase neo4j = new Neo4jDatabase(graphDb);
+
+				System.out.println(String.format("%d source nodes, %d other nodes, page size %d, %d processors",
+						sources, others, PAGE_SIZE, Runtime.getRuntime().availableProcessors()));
+
+				for (int run = 0; run < 2; ++run) {
+					boolean report = run > 0;
+
+					measure(report, "label scan", consumer -> {
+						neo4j.enumrateAllNodesWithLabelAndProperties(SOURCE, new String[] { PROPERTY }, consumer);
+					});
+					measure(report, "paged", consumer -> {
+						neo4j.enumrateAllNodesWithLabelAndProperties(SOURCE, new String[] { PROPERTY }, 0, PAGE_SIZE, consumer);
+					});
+					for (int threads : THREADS)
+						measure(report, threads + " threads", consumer -> {
+							neo4j.enumrateAllNodesWithLabelAndPropertiesParallel(SOURCE, new String[] { PROPERTY }, threads, PAGE_SIZE, consumer);
+						});
+				}
+			} finally {
+				graphDb.shutdown();
+			}
+		} finally {
+			FileUtils.deleteDirectory(folder);
+		}
+	}
+
+	private interface Scan {
+		void run(ProcessProjection consumer) throws Exception;
+	}
+
+	private static void measure(boolean report, String name, Scan scan) throws Exception {
+		Object lock = new Object();
+		long[] count = { 0 };
+
+		long started = System.nanoTime();
+		scan.run(projection -> {
+			synchronized (lock) {
+				++count[0];
+				return true;
+			}
+		});
+		long elapsed = Math.max(1, (System.nanoTime() - started) / 1000000);
+
+		if (report)
+			System.out.println(String.format("  %-11s %,d nodes in %,d ms, %,d nodes/sec",
+					name, count[0], elapsed, count[0] * 1000 / elapsed));
+	}
+
+	private static void createNodes(GraphDatabaseService graphDb, int sources, int others) {
+		Label source = Label.label(SOURCE);
+		Label other = Label.label(OTHER);
+		int total = sources + others;
+
+		// source nodes are spread over the whole id space
+		for (int from = 0; from < total; from += CHUNK_SIZE)
+			try (Transaction t = graphDb.beginTx()) {
+				for (int i = from; i < Math.min(from + CHUNK_SIZE, total); ++i)
+					if ((long) i * sources / total != (long) (i + 1) * sources / total)
+						graphDb.createNode(source).setProperty(PROPERTY, "10.1000/" + i);
+					else
+						graphDb.createNode(other).setProperty(PROPERTY, "10.2000/" + i);
+
+				t.success();
+			}
+	}
+}
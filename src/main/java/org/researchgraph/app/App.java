@@ -1,9 +1,16 @@
 package org.researchgraph.app;
 
+import java.io.File;
+
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.StringUtils;
 import org.researchgraph.configuration.Properties;
+import org.researchgraph.connector.Checkpoint;
 import org.researchgraph.connector.Connector;
+import org.researchgraph.connector.ResolvedFilter;
+import org.researchgraph.connector.Watermark;
+import org.researchgraph.connector.WorkCache;
+import org.researchgraph.neo4j.SpillingUnresolvedRelationshipStore;
 
 public class App {
 	public static void main(String[] args) {
@@ -18,7 +25,7 @@ public class App {
 	        System.out.println("Neo4J: " + neo4jFolder);
 	          
 	        String mysqlHost = properties.getString(Properties.PROPERTY_MYSQL_HOST);
-	        int mysqlPort = properties.getInt(Properties.DEFAULT_MYSQL_PORT);
+	        int mysqlPort = properties.getInt(Properties.PROPERTY_MYSQL_PORT);
 	        String mysqlUser = properties.getString(Properties.PROPERTY_MYSQL_USER);
 	        String mysqlPassword = properties.getString(Properties.PROPERTY_MYSQL_PASSWORD);
 	        String mysqlDatabase = properties.getString(Properties.PROPERTY_MYSQL_DATABASE);
@@ -33,8 +40,161 @@ public class App {
 	        System.out.println("Property: " + property);
 	        System.out.println("Relationship: " + relationship);
 	        
+	        int batchSize = properties.getInt(Properties.PROPERTY_BATCH_SIZE);
+	        if (batchSize <= 0)
+	        	throw new IllegalArgumentException("Batch size must be positive");
+	        System.out.println("Batch size: " + batchSize);
+	        
+	        int requestBatchSize = properties.getInt(Properties.PROPERTY_REQUEST_BATCH_SIZE);
+	        if (requestBatchSize <= 0)
+	        	throw new IllegalArgumentException("Request batch size must be positive");
+	        long requestFlushInterval = properties.getLong(Properties.PROPERTY_REQUEST_FLUSH_INTERVAL);
+	        if (requestFlushInterval <= 0)
+	        	throw new IllegalArgumentException("Request flush interval must be positive");
+	        System.out.println("Request batch size: " + requestBatchSize + ", flush interval: " + requestFlushInterval + " ms");
+	        
+	        boolean pipeline = properties.getBoolean(Properties.PROPERTY_PIPELINE);
+	        int queueCapacity = properties.getInt(Properties.PROPERTY_QUEUE_CAPACITY);
+	        if (queueCapacity <= 0)
+	        	throw new IllegalArgumentException("Queue capacity must be positive");
+	        System.out.println("Pipeline: " + pipeline);
+	        
+	        int resolverWorkers = properties.getInt(Properties.PROPERTY_RESOLVER_WORKERS);
+	        if (resolverWorkers <= 0)
+	        	throw new IllegalArgumentException("Number of resolver workers must be positive");
+	        boolean ordered = properties.getBoolean(Properties.PROPERTY_ORDERED);
+	        if (pipeline) {
+	        	System.out.println("Resolver workers: " + resolverWorkers);
+	        	System.out.println("Ordered: " + ordered);
+	        }
+	        
+	        int nodeCacheSize = properties.getInt(Properties.PROPERTY_NODE_CACHE_SIZE);
+	        if (nodeCacheSize < 0)
+	        	throw new IllegalArgumentException("Node cache size can not be negative");
+	        System.out.println("Node cache size: " + nodeCacheSize);
+	        
+	        int relationshipCacheSize = properties.getInt(Properties.PROPERTY_RELATIONSHIP_CACHE_SIZE);
+	        if (relationshipCacheSize < 0)
+	        	throw new IllegalArgumentException("Relationship cache size can not be negative");
+	        System.out.println("Relationship cache size: " + relationshipCacheSize);
+	        
+	        int unresolvedMemoryLimit = properties.getInt(Properties.PROPERTY_UNRESOLVED_MEMORY_LIMIT);
+	        if (unresolvedMemoryLimit < 0)
+	        	throw new IllegalArgumentException("Unresolved relationships memory limit can not be negative");
+	        String unresolvedFolder = properties.getString(Properties.PROPERTY_UNRESOLVED_FOLDER);
+	        String unresolvedReport = properties.getString(Properties.PROPERTY_UNRESOLVED_REPORT);
+	        System.out.println("Unresolved relationships memory limit: " + unresolvedMemoryLimit);
+	        if (!StringUtils.isEmpty(unresolvedReport))
+	        	System.out.println("Unresolved relationships report: " + unresolvedReport);
+	        
+	        boolean incremental = properties.getBoolean(Properties.PROPERTY_INCREMENTAL);
+	        String watermark = properties.getString(Properties.PROPERTY_WATERMARK);
+	        if (incremental) {
+	        	if (StringUtils.isEmpty(watermark))
+	        		throw new IllegalArgumentException("Watermark file can not be empty in incremental mode");
+	        	System.out.println("Incremental, watermark: " + watermark);
+	        }
+	        
+	        boolean bulk = properties.getBoolean(Properties.PROPERTY_BULK);
+	        if (bulk && (pipeline || incremental))
+	        	throw new IllegalArgumentException("Bulk mode can not be used in pipeline or incremental mode");
+	        System.out.println("Bulk: " + bulk);
+	        
+	        String checkpoint = properties.getString(Properties.PROPERTY_CHECKPOINT);
+	        boolean resume = properties.getBoolean(Properties.PROPERTY_RESUME);
+	        if (resume && StringUtils.isEmpty(checkpoint))
+	        	throw new IllegalArgumentException("Checkpoint file can not be empty to resume a run");
+	        if (resume && pipeline)
+	        	throw new IllegalArgumentException("A run can not be resumed in pipeline mode");
+	        if (resume && bulk)
+	        	throw new IllegalArgumentException("A run can not be resumed in bulk mode");
+	        if (!StringUtils.isEmpty(checkpoint) && !pipeline && !bulk)
+	        	System.out.println("Checkpoint: " + checkpoint + (resume ? ", resume" : ""));
+	        
+	        int chunkSize = properties.getInt(Properties.PROPERTY_CHUNK_SIZE);
+	        if (chunkSize <= 0)
+	        	throw new IllegalArgumentException("Chunk size must be positive");
+	        long chunkLatency = properties.getLong(Properties.PROPERTY_CHUNK_LATENCY);
+	        if (chunkLatency < 0)
+	        	throw new IllegalArgumentException("Chunk latency can not be negative");
+	        long chunkBytes = properties.getLong(Properties.PROPERTY_CHUNK_BYTES);
+	        if (chunkBytes <= 0)
+	        	throw new IllegalArgumentException("Chunk bytes must be positive");
+	        System.out.println("Chunk size: " + chunkSize + ", target latency: " + chunkLatency + " ms, bytes: " + chunkBytes);
+	        
+	        int scanPageSize = properties.getInt(Properties.PROPERTY_SCAN_PAGE_SIZE);
+	        if (scanPageSize < 0)
+	        	throw new IllegalArgumentException("Scan page size can not be negative");
+	        int scanThreads = properties.getInt(Properties.PROPERTY_SCAN_THREADS);
+	        if (scanThreads <= 0)
+	        	throw new IllegalArgumentException("Number of scan threads must be positive");
+	        System.out.println("Scan page size: " + scanPageSize + ", threads: " + scanThreads);
+	        
+	        String crossrefCache = properties.getString(Properties.PROPERTY_CROSSREF_CACHE);
+	        if (!StringUtils.isEmpty(crossrefCache))
+	        	System.out.println("Work cache: " + crossrefCache);
+	        
+	        String resolvedFilter = properties.getString(Properties.PROPERTY_RESOLVED_FILTER);
+	        double resolvedFilterFpp = properties.getDouble(Properties.PROPERTY_RESOLVED_FILTER_FPP);
+	        if (resolvedFilterFpp <= 0 || resolvedFilterFpp >= 1)
+	        	throw new IllegalArgumentException("False positive rate of the resolved filter must be between 0 and 1");
+	        if (!StringUtils.isEmpty(resolvedFilter))
+	        	System.out.println("Resolved filter: " + resolvedFilter + ", false positive rate: " + resolvedFilterFpp);
+	        
+	        String resolution = properties.getString(Properties.PROPERTY_RESOLUTION);
+	        if (!Connector.RESOLUTION_AUTO.equals(resolution) && !Connector.RESOLUTION_LOOKUP.equals(resolution) 
+	        		&& !Connector.RESOLUTION_SCAN.equals(resolution))
+	        	throw new IllegalArgumentException("Resolution must be auto, lookup or scan");
+	        if (Connector.RESOLUTION_SCAN.equals(resolution) && pipeline)
+	        	throw new IllegalArgumentException("DOIs can not be resolved by the scan in pipeline mode");
+	        double scanThreshold = properties.getDouble(Properties.PROPERTY_SCAN_THRESHOLD);
+	        if (scanThreshold <= 0)
+	        	throw new IllegalArgumentException("Scan threshold must be positive");
+	        if (!pipeline)
+	        	System.out.println("Resolution: " + resolution 
+	        			+ (Connector.RESOLUTION_AUTO.equals(resolution) ? ", scan threshold: " + scanThreshold : ""));
+	        
+	        boolean jmx = properties.getBoolean(Properties.PROPERTY_JMX);
+	        System.out.println("JMX: " + jmx);
+	        
+	        long progressInterval = properties.getLong(Properties.PROPERTY_PROGRESS_INTERVAL);
+	        if (progressInterval < 0)
+	        	throw new IllegalArgumentException("Progress interval can not be negative");
+	        System.out.println("Progress interval: " + progressInterval + " ms");
+	        
 	        Connector connector = new Connector(neo4jFolder, 
 	        		mysqlHost, mysqlPort, mysqlUser, mysqlPassword, mysqlDatabase);
+	        connector.setBatchSize(batchSize);
+	        connector.setRequestBatchSize(requestBatchSize);
+	        connector.setRequestFlushInterval(requestFlushInterval);
+	        connector.setPipelined(pipeline);
+	        connector.setQueueCapacity(queueCapacity);
+	        connector.setResolverWorkers(resolverWorkers);
+	        connector.setOrdered(ordered);
+	        connector.setNodeCacheSize(nodeCacheSize);
+	        connector.setRelationshipCacheSize(relationshipCacheSize);
+	        connector.setUnresolvedRelationshipStore(new SpillingUnresolvedRelationshipStore(unresolvedMemoryLimit, 
+	        		StringUtils.isEmpty(unresolvedFolder) ? null : new File(unresolvedFolder)));
+	        connector.setUnresolvedReport(unresolvedReport);
+	        if (incremental)
+	        	connector.setWatermark(new Watermark(watermark));
+	        if (!StringUtils.isEmpty(checkpoint) && !bulk)
+	        	connector.setCheckpoint(new Checkpoint(checkpoint));
+	        connector.setResume(resume);
+	        connector.setChunkSize(chunkSize);
+	        connector.setChunkLatency(chunkLatency);
+	        connector.setChunkBudget(chunkBytes);
+	        connector.setScanPageSize(scanPageSize);
+	        connector.setScanThreads(scanThreads);
+	        connector.setBulk(bulk);
+	        if (!StringUtils.isEmpty(crossrefCache))
+	        	connector.setWorkCache(new WorkCache(crossrefCache));
+	        if (!StringUtils.isEmpty(resolvedFilter))
+	        	connector.setResolvedFilter(new ResolvedFilter(resolvedFilter, resolvedFilterFpp));
+	        connector.setResolution(resolution);
+	        connector.setScanThreshold(scanThreshold);
+	        connector.setJmx(jmx);
+	        connector.setProgressInterval(progressInterval);
 	        
 	        connector.processNodes(source, property, relationship);
 	        
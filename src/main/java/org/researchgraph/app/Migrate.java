@@ -0,0 +1,35 @@
+package org.researchgraph.app;
+
+import java.sql.Connection;
+
+import org.apache.commons.configuration.Configuration;
+import org.researchgraph.configuration.Properties;
+import org.researchgraph.connector.Connector;
+import org.researchgraph.connector.DoiHashMigration;
+
+public class Migrate {
+	public static void main(String[] args) {
+		try {
+			Class.forName("com.mysql.jdbc.Driver").newInstance();
+			
+			Configuration properties = Properties.fromArgs(args);
+	        
+	        String mysqlHost = properties.getString(Properties.PROPERTY_MYSQL_HOST);
+	        int mysqlPort = properties.getInt(Properties.PROPERTY_MYSQL_PORT);
+	        String mysqlUser = properties.getString(Properties.PROPERTY_MYSQL_USER);
+	        String mysqlPassword = properties.getString(Properties.PROPERTY_MYSQL_PASSWORD);
+	        String mysqlDatabase = properties.getString(Properties.PROPERTY_MYSQL_DATABASE);
+	        
+	        System.out.println("MySQL: " + mysqlHost);
+	        
+	        try (Connection conn = Connector.openConnection(mysqlHost, mysqlPort, mysqlUser, mysqlPassword, mysqlDatabase)) {
+	        	new DoiHashMigration(conn).migrate(System.out);
+	        }
+	        
+		} catch (Exception e) {
+            e.printStackTrace();
+            
+            System.exit(1);
+		}       
+	}
+}
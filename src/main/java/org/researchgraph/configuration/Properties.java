@@ -31,6 +31,35 @@ public class Properties {
 	public static final String PROPERTY_MYSQL_USER = "mysql-user";
 	public static final String PROPERTY_MYSQL_PASSWORD = "mysql-password";
 	public static final String PROPERTY_MYSQL_DATABASE = "mysql-database";
+	public static final String PROPERTY_BATCH_SIZE = "batch-size";
+	public static final String PROPERTY_REQUEST_BATCH_SIZE = "request-batch-size";
+	public static final String PROPERTY_REQUEST_FLUSH_INTERVAL = "request-flush-interval";
+	public static final String PROPERTY_PIPELINE = "pipeline";
+	public static final String PROPERTY_QUEUE_CAPACITY = "queue-capacity";
+	public static final String PROPERTY_RESOLVER_WORKERS = "resolver-workers";
+	public static final String PROPERTY_ORDERED = "ordered";
+	public static final String PROPERTY_NODE_CACHE_SIZE = "node-cache-size";
+	public static final String PROPERTY_RELATIONSHIP_CACHE_SIZE = "relationship-cache-size";
+	public static final String PROPERTY_UNRESOLVED_MEMORY_LIMIT = "unresolved-memory-limit";
+	public static final String PROPERTY_UNRESOLVED_FOLDER = "unresolved-folder";
+	public static final String PROPERTY_UNRESOLVED_REPORT = "unresolved-report";
+	public static final String PROPERTY_INCREMENTAL = "incremental";
+	public static final String PROPERTY_WATERMARK = "watermark";
+	public static final String PROPERTY_CHECKPOINT = "checkpoint";
+	public static final String PROPERTY_RESUME = "resume";
+	public static final String PROPERTY_CHUNK_SIZE = "chunk-size";
+	public static final String PROPERTY_CHUNK_LATENCY = "chunk-latency";
+	public static final String PROPERTY_CHUNK_BYTES = "chunk-bytes";
+	public static final String PROPERTY_SCAN_PAGE_SIZE = "scan-page-size";
+	public static final String PROPERTY_SCAN_THREADS = "scan-threads";
+	public static final String PROPERTY_BULK = "bulk";
+	public static final String PROPERTY_CROSSREF_CACHE = "crossref-cache";
+	public static final String PROPERTY_RESOLVED_FILTER = "resolved-filter";
+	public static final String PROPERTY_RESOLVED_FILTER_FPP = "resolved-filter-fpp";
+	public static final String PROPERTY_RESOLUTION = "resolution";
+	public static final String PROPERTY_SCAN_THRESHOLD = "scan-threshold";
+	public static final String PROPERTY_JMX = "jmx";
+	public static final String PROPERTY_PROGRESS_INTERVAL = "progress-interval";
 	public static final String PROPERTY_CONFIG_FILE = "config-file";
 	public static final String PROPERTY_HELP = "help";
 	
@@ -39,6 +68,32 @@ public class Properties {
 	public static final String DEFAULT_MYSQL_HOST = "localhost";
 	public static final String DEFAULT_MYSQL_PORT = "3306";
 	public static final String DEFAULT_MYSQL_DATABASE = "crossref";
+	public static final String DEFAULT_BATCH_SIZE = "1000";
+	public static final String DEFAULT_REQUEST_BATCH_SIZE = "1000";
+	public static final String DEFAULT_REQUEST_FLUSH_INTERVAL = "1000";
+	public static final String DEFAULT_PIPELINE = "false";
+	public static final String DEFAULT_QUEUE_CAPACITY = "16";
+	public static final String DEFAULT_RESOLVER_WORKERS = "1";
+	public static final String DEFAULT_ORDERED = "false";
+	public static final String DEFAULT_NODE_CACHE_SIZE = "100000";
+	public static final String DEFAULT_RELATIONSHIP_CACHE_SIZE = "1000000";
+	public static final String DEFAULT_UNRESOLVED_MEMORY_LIMIT = "100000";
+	public static final String DEFAULT_INCREMENTAL = "false";
+	public static final String DEFAULT_WATERMARK = "watermark.txt";
+	public static final String DEFAULT_CHECKPOINT = "checkpoint.txt";
+	public static final String DEFAULT_RESUME = "false";
+	public static final String DEFAULT_CHUNK_SIZE = "1000";
+	public static final String DEFAULT_CHUNK_LATENCY = "1000";
+	public static final String DEFAULT_CHUNK_BYTES = "33554432";
+	public static final String DEFAULT_SCAN_PAGE_SIZE = "0";
+	public static final String DEFAULT_SCAN_THREADS = "1";
+	public static final String DEFAULT_BULK = "false";
+	public static final String DEFAULT_RESOLVED_FILTER = "crossref/resolved.bloom";
+	public static final String DEFAULT_RESOLVED_FILTER_FPP = "0.01";
+	public static final String DEFAULT_RESOLUTION = "auto";
+	public static final String DEFAULT_SCAN_THRESHOLD = "0.1";
+	public static final String DEFAULT_JMX = "true";
+	public static final String DEFAULT_PROGRESS_INTERVAL = "10000";
 	
 	public static Configuration fromArgs(String[] args) throws Exception {
 		CommandLineParser parser = new DefaultParser();
@@ -54,6 +109,35 @@ public class Properties {
 		options.addOption( "U", PROPERTY_MYSQL_USER, true, "MySQL User" );
 		options.addOption( "P", PROPERTY_MYSQL_PASSWORD, true, "MySQL Password" );
 		options.addOption( "D", PROPERTY_MYSQL_DATABASE, true, "MySQL Database" );
+		options.addOption( "b", PROPERTY_BATCH_SIZE, true, "Number of DOIs resolved by a single query (optional)" );
+		options.addOption( null, PROPERTY_REQUEST_BATCH_SIZE, true, "Number of DOI requests inserted by a single query (optional)" );
+		options.addOption( null, PROPERTY_REQUEST_FLUSH_INTERVAL, true, "Maximum time in milliseconds DOI requests are buffered (optional)" );
+		options.addOption( null, PROPERTY_PIPELINE, false, "Run Neo4j scan, MySQL resolution and Neo4j import concurrently (optional)" );
+		options.addOption( null, PROPERTY_QUEUE_CAPACITY, true, "Number of batches buffered between pipeline stages (optional)" );
+		options.addOption( null, PROPERTY_RESOLVER_WORKERS, true, "Number of concurrent MySQL resolver workers in pipeline mode (optional)" );
+		options.addOption( null, PROPERTY_ORDERED, false, "Import resolved batches in the scan order in pipeline mode (optional)" );
+		options.addOption( null, PROPERTY_NODE_CACHE_SIZE, true, "Number of node keys cached during the import, 0 disables the cache (optional)" );
+		options.addOption( null, PROPERTY_RELATIONSHIP_CACHE_SIZE, true, "Number of relationships remembered as existing during the import, 0 disables the cache (optional)" );
+		options.addOption( null, PROPERTY_UNRESOLVED_MEMORY_LIMIT, true, "Number of unresolved relationships kept in memory before spilling to disk (optional)" );
+		options.addOption( null, PROPERTY_UNRESOLVED_FOLDER, true, "Folder for the unresolved relationships spill file, system temporary folder by default (optional)" );
+		options.addOption( null, PROPERTY_UNRESOLVED_REPORT, true, "File to write relationships what are still unresolved after the import (optional)" );
+		options.addOption( null, PROPERTY_INCREMENTAL, false, "Link only works resolved since the last run (optional)" );
+		options.addOption( null, PROPERTY_WATERMARK, true, "File to store the resolution time of the last linked work in incremental mode (optional)" );
+		options.addOption( null, PROPERTY_CHECKPOINT, true, "File to record committed chunks, empty value disables checkpoints (optional)" );
+		options.addOption( null, PROPERTY_RESUME, false, "Continue after the last committed chunk of the checkpoint (optional)" );
+		options.addOption( null, PROPERTY_CHUNK_SIZE, true, "Initial number of graph objects imported in a single transaction (optional)" );
+		options.addOption( null, PROPERTY_CHUNK_LATENCY, true, "Target transaction commit time in milliseconds, 0 keeps the chunk size fixed (optional)" );
+		options.addOption( null, PROPERTY_CHUNK_BYTES, true, "Maximal estimated size of a single transaction in bytes (optional)" );
+		options.addOption( null, PROPERTY_SCAN_PAGE_SIZE, true, "Number of labelled source nodes read in a single read transaction, 0 scans all nodes in one transaction (optional)" );
+		options.addOption( null, PROPERTY_SCAN_THREADS, true, "Number of threads scanning source nodes, 1 scans the nodes sequentially (optional)" );
+		options.addOption( null, PROPERTY_BULK, false, "Import works by the batch inserter, with the Neo4j database used by nobody else (optional)" );
+		options.addOption( null, PROPERTY_CROSSREF_CACHE, true, "Folder of the local cache of resolved works, empty to disable the cache (optional)" );
+		options.addOption( null, PROPERTY_RESOLVED_FILTER, true, "File of the Bloom filter of resolved DOIs, empty to look up every DOI (optional)" );
+		options.addOption( null, PROPERTY_RESOLVED_FILTER_FPP, true, "False positive rate of the resolved filter (optional)" );
+		options.addOption( null, PROPERTY_RESOLUTION, true, "How to resolve DOIs: auto, lookup or scan (optional)" );
+		options.addOption( null, PROPERTY_SCAN_THRESHOLD, true, "Ratio of referenced DOIs to doi_resolution rows, from which DOIs are resolved by the scan (optional)" );
+		options.addOption( null, PROPERTY_JMX, true, "Publish run metrics over JMX (optional)" );
+		options.addOption( null, PROPERTY_PROGRESS_INTERVAL, true, "Time between progress reports in milliseconds, 0 to disable the reports (optional)" );
 		options.addOption( "c", PROPERTY_CONFIG_FILE, true, "configuration file (optional)" );
 		options.addOption( "h", PROPERTY_HELP, false, "Print this message" );
 
@@ -75,6 +159,33 @@ public class Properties {
 		defaultConfig.setProperty( PROPERTY_MYSQL_HOST, DEFAULT_MYSQL_HOST );
 		defaultConfig.setProperty( PROPERTY_MYSQL_PORT, DEFAULT_MYSQL_PORT );
 		defaultConfig.setProperty( PROPERTY_MYSQL_DATABASE, DEFAULT_MYSQL_DATABASE );
+		defaultConfig.setProperty( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE );
+		defaultConfig.setProperty( PROPERTY_REQUEST_BATCH_SIZE, DEFAULT_REQUEST_BATCH_SIZE );
+		defaultConfig.setProperty( PROPERTY_REQUEST_FLUSH_INTERVAL, DEFAULT_REQUEST_FLUSH_INTERVAL );
+		defaultConfig.setProperty( PROPERTY_PIPELINE, DEFAULT_PIPELINE );
+		defaultConfig.setProperty( PROPERTY_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY );
+		defaultConfig.setProperty( PROPERTY_RESOLVER_WORKERS, DEFAULT_RESOLVER_WORKERS );
+		defaultConfig.setProperty( PROPERTY_ORDERED, DEFAULT_ORDERED );
+		defaultConfig.setProperty( PROPERTY_NODE_CACHE_SIZE, DEFAULT_NODE_CACHE_SIZE );
+		defaultConfig.setProperty( PROPERTY_RELATIONSHIP_CACHE_SIZE, DEFAULT_RELATIONSHIP_CACHE_SIZE );
+		defaultConfig.setProperty( PROPERTY_UNRESOLVED_MEMORY_LIMIT, DEFAULT_UNRESOLVED_MEMORY_LIMIT );
+		defaultConfig.setProperty( PROPERTY_INCREMENTAL, DEFAULT_INCREMENTAL );
+		defaultConfig.setProperty( PROPERTY_WATERMARK, DEFAULT_WATERMARK );
+		defaultConfig.setProperty( PROPERTY_CHECKPOINT, DEFAULT_CHECKPOINT );
+		defaultConfig.setProperty( PROPERTY_RESUME, DEFAULT_RESUME );
+		defaultConfig.setProperty( PROPERTY_CHUNK_SIZE, DEFAULT_CHUNK_SIZE );
+		defaultConfig.setProperty( PROPERTY_CHUNK_LATENCY, DEFAULT_CHUNK_LATENCY );
+		defaultConfig.setProperty( PROPERTY_CHUNK_BYTES, DEFAULT_CHUNK_BYTES );
+		defaultConfig.setProperty( PROPERTY_SCAN_PAGE_SIZE, DEFAULT_SCAN_PAGE_SIZE );
+		defaultConfig.setProperty( PROPERTY_SCAN_THREADS, DEFAULT_SCAN_THREADS );
+		defaultConfig.setProperty( PROPERTY_BULK, DEFAULT_BULK );
+		defaultConfig.setProperty( PROPERTY_CROSSREF_CACHE, DEFAULT_CROSSREF_CACHE );
+		defaultConfig.setProperty( PROPERTY_RESOLVED_FILTER, DEFAULT_RESOLVED_FILTER );
+		defaultConfig.setProperty( PROPERTY_RESOLVED_FILTER_FPP, DEFAULT_RESOLVED_FILTER_FPP );
+		defaultConfig.setProperty( PROPERTY_RESOLUTION, DEFAULT_RESOLUTION );
+		defaultConfig.setProperty( PROPERTY_SCAN_THRESHOLD, DEFAULT_SCAN_THRESHOLD );
+		defaultConfig.setProperty( PROPERTY_JMX, DEFAULT_JMX );
+		defaultConfig.setProperty( PROPERTY_PROGRESS_INTERVAL, DEFAULT_PROGRESS_INTERVAL );
 		
 		BaseConfiguration commandLineConfig = new BaseConfiguration();
 		
@@ -84,7 +195,8 @@ public class Properties {
 			if ( PROPERTY_CONFIG_FILE.equals(option.getLongOpt()) ) {
 				configurationFile = Paths.get(option.getValue());
 			} else {
-				commandLineConfig.setProperty(option.getLongOpt(), option.getValue());
+				// options without argument are flags
+				commandLineConfig.setProperty(option.getLongOpt(), option.hasArg() ? option.getValue() : Boolean.TRUE.toString());
 			}
 		}
 		
@@ -0,0 +1,168 @@
+package org.researchgraph.connector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class to record progress of a run in a small local file
+ *
+ * The first line contains the run parameters. Every committed chunk appends a line with
+ * the chunk number, the number of processed DOIs in the sorted order and the last processed DOI.
+ * Every line is forced to the disk before the next chunk is imported. A line left without
+ * the line separator by a crash will be ignored.
+ *
+ * The file is deleted when the run completes.
+ */
+
+public class Checkpoint implements AutoCloseable {
+	private static final String HEADER = "# ";
+	private static final String SEPARATOR = "\t";
+
+	private final Path path;
+	private FileChannel channel;
+
+	public static class Position {
+		private final int chunk;
+		private final int processed;
+		private final String doi;
+
+		public Position(int chunk, int processed, String doi) {
+			this.chunk = chunk;
+			this.processed = processed;
+			this.doi = doi;
+		}
+
+		public int getChunk() {
+			return chunk;
+		}
+
+		public int getProcessed() {
+			return processed;
+		}
+
+		public String getDoi() {
+			return doi;
+		}
+
+		@Override
+		public String toString() {
+			return "chunk " + chunk + ", " + processed + " DOIs, last DOI " + doi;
+		}
+	}
+
+	public Checkpoint(Path path) {
+		this.path = path;
+	}
+
+	public Checkpoint(String path) {
+		this(Paths.get(path));
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Function to load the last committed position
+	 * @param parameters the run parameters, what must match the stored ones
+	 * @return position or null if there is no checkpoint
+	 * @throws IllegalStateException if the checkpoint has been written by a run with different parameters
+	 * @throws IOException
+	 */
+	public Position load(String parameters) throws IOException {
+		if (!Files.exists(path))
+			return null;
+
+		// a line without the line separator has not been completed
+		String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		List<String> lines = Arrays.asList(content.substring(0, content.lastIndexOf('\n') + 1).split("\n"));
+		if (lines.get(0).isEmpty())
+			return null;
+
+		if (!lines.get(0).equals(HEADER + parameters))
+			throw new IllegalStateException("The checkpoint " + path + " has been created by a different run: "
+					+ lines.get(0).substring(Math.min(HEADER.length(), lines.get(0).length())));
+
+		Position position = null;
+		for (String line : lines.subList(1, lines.size())) {
+			String[] parts = line.split(SEPARATOR, 3);
+			if (parts.length == 3)
+				position = new Position(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), parts[2]);
+		}
+
+		return position;
+	}
+
+	/**
+	 * Function to start a new checkpoint, what will replace any existing one
+	 */
+	public void start(String parameters) throws IOException {
+		close();
+
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		write(HEADER + parameters);
+	}
+
+	/**
+	 * Function to continue an existing checkpoint
+	 */
+	public void resume() throws IOException {
+		close();
+
+		// drop a line left incomplete by a crash
+		byte[] content = Files.readAllBytes(path);
+		int size = content.length;
+		while (size > 0 && '\n' != content[size - 1])
+			--size;
+
+		channel = FileChannel.open(path, StandardOpenOption.WRITE);
+		channel.truncate(size);
+		channel.position(size);
+	}
+
+	/**
+	 * Function to record a committed chunk
+	 * @param chunk chunk number
+	 * @param processed number of DOIs processed in the sorted order
+	 * @param doi the last processed DOI
+	 */
+	public void commit(int chunk, int processed, String doi) throws IOException {
+		if (null == channel)
+			throw new IllegalStateException("The checkpoint has not been started");
+
+		write(chunk + SEPARATOR + processed + SEPARATOR + doi);
+	}
+
+	/**
+	 * Function to delete the checkpoint after the run has been completed
+	 */
+	public void complete() throws IOException {
+		close();
+
+		Files.deleteIfExists(path);
+	}
+
+	private void write(String line) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+
+		channel.force(false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (null != channel) {
+			channel.close();
+			channel = null;
+		}
+	}
+}
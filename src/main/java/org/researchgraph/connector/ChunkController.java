@@ -0,0 +1,176 @@
+package org.researchgraph.connector;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+import org.researchgraph.graph.GraphNode;
+
+/**
+ * A class to decide when a chunk of graph objects must be committed
+ *
+ * A chunk is full when it reaches the current chunk size or the estimated byte budget
+ * of a transaction. After every commit the chunk size is moved towards the size, what would
+ * be committed in the target latency, at most doubled or halved at a time. Chunks smaller
+ * than the chunk size can only make it smaller.
+ * A controller with zero target latency keeps the initial chunk size.
+ *
+ * Sizes of transactions are estimated from the graph objects, not measured.
+ */
+
+public class ChunkController {
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 100;
+	public static final int DEFAULT_MAX_CHUNK_SIZE = 50000;
+	public static final long DEFAULT_TARGET_LATENCY = 1000;
+	public static final long DEFAULT_BYTE_BUDGET = 32L * 1024 * 1024;
+
+	// rough size of Neo4j transaction state
+	private static final long NODE_BYTES = 256;
+	private static final long RELATIONSHIP_BYTES = 128;
+	private static final long PROPERTY_BYTES = 64;
+
+	private final int minSize;
+	private final int maxSize;
+	private final long targetLatency;
+	private final long byteBudget;
+	private final boolean verbose;
+
+	private int chunkSize;
+	private int objects = 0;
+	private long bytes = 0;
+
+	private int chunks = 0;
+	private long totalObjects = 0;
+	private long totalBytes = 0;
+	private long totalNanos = 0;
+	private int smallestChunk = Integer.MAX_VALUE;
+	private int largestChunk = 0;
+	private int splitChunks = 0;
+
+	/**
+	 * @param chunkSize initial number of objects in a chunk
+	 * @param minSize minimal chunk size
+	 * @param maxSize maximal chunk size
+	 * @param targetLatency target commit time in milliseconds or 0 to keep the chunk size
+	 * @param byteBudget maximal estimated size of a chunk in bytes
+	 * @param verbose print statistics of every chunk
+	 */
+	public ChunkController(int chunkSize, int minSize, int maxSize, long targetLatency, long byteBudget, boolean verbose) {
+		if (minSize <= 0 || minSize > maxSize)
+			throw new IllegalArgumentException("Invalid chunk size limits");
+		if (byteBudget <= 0)
+			throw new IllegalArgumentException("Byte budget must be positive");
+
+		this.chunkSize = Math.max(minSize, Math.min(maxSize, chunkSize));
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.targetLatency = targetLatency;
+		this.byteBudget = byteBudget;
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Function to create a controller with a fixed chunk size, what still splits chunks by the byte budget
+	 */
+	public static ChunkController fixed(int chunkSize, long byteBudget) {
+		return new ChunkController(chunkSize, chunkSize, chunkSize, 0, byteBudget, false);
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public long getTargetLatency() {
+		return targetLatency;
+	}
+
+	public long getByteBudget() {
+		return byteBudget;
+	}
+
+	public int getChunks() {
+		return chunks;
+	}
+
+	public void addNode(GraphNode node) {
+		++objects;
+		bytes += NODE_BYTES + estimate(node.getProperties());
+	}
+
+	public void addRelationship() {
+		++objects;
+		bytes += RELATIONSHIP_BYTES;
+	}
+
+	public boolean isFull() {
+		return objects >= chunkSize || bytes >= byteBudget;
+	}
+
+	public boolean isEmpty() {
+		return 0 == objects;
+	}
+
+	/**
+	 * Function to record a committed chunk and adjust the chunk size
+	 * @param nanos commit time in nanoseconds
+	 * @param split true if the chunk has been cut in the middle of a single DOI
+	 */
+	public void commit(long nanos, boolean split) {
+		++chunks;
+		totalObjects += objects;
+		totalBytes += bytes;
+		totalNanos += nanos;
+		smallestChunk = Math.min(smallestChunk, objects);
+		largestChunk = Math.max(largestChunk, objects);
+		if (split)
+			++splitChunks;
+
+		int previousSize = chunkSize;
+		if (targetLatency > 0 && objects > 0) {
+			double ideal = (double) objects * targetLatency * 1000000 / Math.max(1, nanos);
+			// a chunk cut before the chunk size can only tell, what the chunk size is too large
+			if (objects >= chunkSize || ideal < chunkSize) {
+				double size = Math.max(chunkSize / 2.0, Math.min(chunkSize * 2.0, ideal));
+				chunkSize = (int) Math.max(minSize, Math.min(maxSize, size));
+			}
+		}
+
+		if (verbose)
+			System.out.println(String.format("chunk %d: %d objects, %d KB estimated, %d ms%s, chunk size %d -> %d",
+					chunks, objects, bytes / 1024, nanos / 1000000, split ? ", split" : "", previousSize, chunkSize));
+
+		objects = 0;
+		bytes = 0;
+	}
+
+	public void printStatistics(PrintStream out) {
+		if (0 == chunks) {
+			out.println("No chunk has been committed.");
+			return;
+		}
+
+		out.println(String.format("%d chunks has been committed, %d of them split from a single DOI.\n"
+				+ "Chunk size: smallest %d, largest %d, average %d objects, final size %d.\n"
+				+ "Average chunk: %d KB estimated, %d ms.",
+				chunks, splitChunks, smallestChunk, largestChunk, totalObjects / chunks, chunkSize,
+				totalBytes / chunks / 1024, totalNanos / chunks / 1000000));
+	}
+
+	private static long estimate(Map<String, Object> properties) {
+		long size = 0;
+		for (Map.Entry<String, Object> property : properties.entrySet()) {
+			size += PROPERTY_BYTES + property.getKey().length() * 2;
+
+			Object value = property.getValue();
+			if (value instanceof String)
+				size += ((String) value).length() * 2;
+			else if (value instanceof Object[])
+				for (Object element : (Object[]) value)
+					size += element instanceof String ? ((String) element).length() * 2 : 8;
+			else
+				size += 8;
+		}
+
+		return size;
+	}
+}
@@ -1,179 +1,1131 @@
 package org.researchgraph.connector;
 
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
 
+import org.apache.commons.lang.StringUtils;
 import org.researchgraph.graph.Graph;
 import org.researchgraph.graph.GraphKey;
 import org.researchgraph.graph.GraphNode;
 import org.researchgraph.graph.GraphRelationship;
 import org.researchgraph.graph.GraphSchema;
 import org.researchgraph.graph.GraphUtils;
+import org.researchgraph.graph.interfaces.GraphImporter;
+import org.researchgraph.metrics.Counter;
+import org.researchgraph.metrics.MetricRegistry;
+import org.researchgraph.neo4j.Neo4jBatchImporter;
 import org.researchgraph.neo4j.Neo4jDatabase;
+import org.researchgraph.neo4j.NodeProjection;
+import org.researchgraph.neo4j.interfaces.ProcessProjection;
+import org.researchgraph.neo4j.interfaces.UnresolvedRelationshipStore;
 
 public class Connector {
 	public static final String SOURCE_CROSSREF = "crossref";
 	public static final String URL_CROSSREF ="crossref.org";
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	public static final int DEFAULT_QUEUE_CAPACITY = 16;
+	public static final int DEFAULT_RESOLVER_WORKERS = 1;
+	public static final int DEFAULT_SCAN_PAGE_SIZE = 0;
+	public static final int DEFAULT_SCAN_PARTITION_SIZE = 100000;
+	public static final int DEFAULT_SCAN_THREADS = 1;
+	public static final String RESOLUTION_AUTO = "auto";
+	public static final String RESOLUTION_LOOKUP = "lookup";
+	public static final String RESOLUTION_SCAN = "scan";
+	public static final double DEFAULT_SCAN_THRESHOLD = 0.1;
+	public static final String METRIC_SCANNED_NODES = "scan.nodes";
+	public static final String METRIC_REFERENCED_DOIS = "scan.dois";
+	public static final String METRIC_CACHE_HITS = "cache.hits";
+	public static final String METRIC_FILTER_SKIPPED = "filter.skipped";
+	public static final String METRIC_QUEUE = "pipeline.queue.";
 	
+	private static final String[] DOI_PREFIXES = { "", "doi:", "DOI:", 
+			"http://dx.doi.org/", "https://dx.doi.org/", "http://doi.org/", "https://doi.org/" };
+	private static final ReferenceBatch END_OF_REFERENCES = new ReferenceBatch(-1, null);
+	private static final GraphBatch END_OF_GRAPHS = new GraphBatch(-1, null);
+	
+	private final String neo4jFolder;
 	private final Neo4jDatabase neo4j;
+	private GraphImporter importer;
+	private final String url;
 	private final Connection conn;
-	private final PreparedStatement requestWork;
-	private final PreparedStatement selectWork;
-	private final PreparedStatement selectAuthors;
 	private int processedNodes = 0;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int requestBatchSize = WorkRequester.DEFAULT_BATCH_SIZE;
+	private long requestFlushInterval = WorkRequester.DEFAULT_FLUSH_INTERVAL;
+	private boolean pipelined = false;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int resolverWorkers = DEFAULT_RESOLVER_WORKERS;
+	private boolean ordered = false;
+	private String unresolvedReport;
+	private Watermark watermark;
+	private Checkpoint checkpoint;
+	private boolean resume = false;
+	private int chunkSize = ChunkController.DEFAULT_CHUNK_SIZE;
+	private long chunkLatency = ChunkController.DEFAULT_TARGET_LATENCY;
+	private long chunkBudget = ChunkController.DEFAULT_BYTE_BUDGET;
+	private int scanPageSize = DEFAULT_SCAN_PAGE_SIZE;
+	private int scanThreads = DEFAULT_SCAN_THREADS;
+	private boolean bulk = false;
+	private WorkCache workCache;
+	private ResolvedFilter resolvedFilter;
+	private String resolution = RESOLUTION_AUTO;
+	private double scanThreshold = DEFAULT_SCAN_THRESHOLD;
+	private final MetricRegistry metrics = new MetricRegistry();
+	private final Counter scannedNodes = metrics.counter(METRIC_SCANNED_NODES);
+	private boolean jmx = false;
+	private long progressInterval = ProgressReporter.DEFAULT_INTERVAL;
+	
+	private interface ChunkConsumer {
+		/**
+		 * @param graph full graph
+		 * @param processed number of processed positions, including all works in the graph
+		 */
+		void accept(Graph graph, int processed) throws Exception;
+	}
+	
+	private static class ReferenceBatch {
+		final long sequence;
+		final ReferenceTable references;
+		
+		ReferenceBatch(long sequence, ReferenceTable references) {
+			this.sequence = sequence;
+			this.references = references;
+		}
+	}
+	
+	private static class GraphBatch {
+		final long sequence;
+		final List<Graph> graphs;
+		
+		GraphBatch(long sequence, List<Graph> graphs) {
+			this.sequence = sequence;
+			this.graphs = graphs;
+		}
+	}
 	
 	public Connector(String neo4jFolder, String host, int port, String user, String password, String database) throws Exception {
+		this.neo4jFolder = neo4jFolder;
 		neo4j = new Neo4jDatabase(neo4jFolder);	   
-		conn = DriverManager.getConnection("jdbc:mysql://" + host + ":" + port + "/" + database + "?user=" + user + "&password=" + password);
+		neo4j.setMetrics(metrics);
+		importer = neo4j;
+		url = getConnectionUrl(host, port, user, password, database);
+		conn = DriverManager.getConnection(url);
 		
-		this.requestWork = conn.prepareStatement("INSERT INTO doi_resolution SET doi=?, created=NOW()");
-		this.selectWork = conn.prepareStatement("SELECT resolution_id, source, source_url, url, title, year, created, resolved FROM doi_resolution WHERE doi LIKE ?");
-		this.selectAuthors = conn.prepareStatement("SELECT first_name, last_name, full_name, orcid FROM doi_author WHERE resolution_id=?");
+		if (!DoiHashMigration.isMigrated(conn))
+			throw new IllegalStateException("The doi_resolution table has no complete doi_hash index. Please run the migration first");
+	}
+	
+	public static String getConnectionUrl(String host, int port, String user, String password, String database) {
+		return "jdbc:mysql://" + host + ":" + port + "/" + database + "?user=" + user + "&password=" + password;
+	}
+	
+	public static Connection openConnection(String host, int port, String user, String password, String database) throws SQLException {
+		return DriverManager.getConnection(getConnectionUrl(host, port, user, password, database));
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
 	}
 	
+	public int getRequestBatchSize() {
+		return requestBatchSize;
+	}
+
+	public void setRequestBatchSize(int requestBatchSize) {
+		this.requestBatchSize = requestBatchSize;
+	}
+
+	public long getRequestFlushInterval() {
+		return requestFlushInterval;
+	}
+
+	public void setRequestFlushInterval(long requestFlushInterval) {
+		this.requestFlushInterval = requestFlushInterval;
+	}
+	
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	/**
+	 * Enables pipelined mode, where Neo4j scan, MySQL resolution and Neo4j import
+	 * run concurrently, connected by queues of limited capacity. 
+	 * @param pipelined
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public int getResolverWorkers() {
+		return resolverWorkers;
+	}
+
+	/**
+	 * Sets the number of MySQL resolver workers used in pipelined mode.
+	 * Every worker has its own connection and prepared statements.
+	 * @param resolverWorkers
+	 */
+	public void setResolverWorkers(int resolverWorkers) {
+		this.resolverWorkers = resolverWorkers;
+	}
+
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * Sets if resolved batches must be imported in the order they were scanned.
+	 * Otherwise batches are imported in the order they were resolved.
+	 * In ordered mode the scanner waits while queue capacity plus resolver workers 
+	 * batches have been scanned but not imported, what bounds batches held by the writer.
+	 * @param ordered
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	public int getNodeCacheSize() {
+		return neo4j.getNodeCacheSize();
+	}
+
+	/**
+	 * Sets the number of keys, which node ids will be cached by the Neo4j importer.
+	 * @param nodeCacheSize cache capacity, 0 disables the cache
+	 */
+	public void setNodeCacheSize(int nodeCacheSize) {
+		neo4j.setNodeCacheSize(nodeCacheSize);
+	}
+
+	public int getRelationshipCacheSize() {
+		return neo4j.getRelationshipCacheSize();
+	}
+
+	/**
+	 * Sets the number of relationships remembered as existing by the Neo4j importer.
+	 * @param relationshipCacheSize cache capacity, 0 disables the cache
+	 */
+	public void setRelationshipCacheSize(int relationshipCacheSize) {
+		neo4j.setRelationshipCacheSize(relationshipCacheSize);
+	}
+
+	public void setUnresolvedRelationshipStore(UnresolvedRelationshipStore store) {
+		neo4j.setUnresolvedRelationshipStore(store);
+	}
+
+	public Watermark getWatermark() {
+		return watermark;
+	}
+
+	/**
+	 * Enables incremental mode, where only works resolved since the watermark will be linked.
+	 * The watermark is updated after every imported block of works.
+	 * @param watermark watermark or null to process all nodes
+	 */
+	public void setWatermark(Watermark watermark) {
+		this.watermark = watermark;
+	}
+
+	public Checkpoint getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * Sets the checkpoint, what will record every committed chunk. 
+	 * Checkpoints are not used in pipelined mode, where chunks are imported out of order.
+	 * @param checkpoint checkpoint or null to disable checkpoints
+	 */
+	public void setCheckpoint(Checkpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	public boolean isResume() {
+		return resume;
+	}
+
+	/**
+	 * Sets if the run must continue after the last committed chunk of the checkpoint.
+	 * @param resume
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Sets the initial number of graph objects imported in one transaction.
+	 * @param chunkSize
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public long getChunkLatency() {
+		return chunkLatency;
+	}
+
+	/**
+	 * Sets the target commit time, what the chunk size will be adjusted to.
+	 * The chunk size is fixed in pipelined mode, where chunks are created before the import.
+	 * @param chunkLatency time in milliseconds or 0 to keep the chunk size
+	 */
+	public void setChunkLatency(long chunkLatency) {
+		this.chunkLatency = chunkLatency;
+	}
+
+	public long getChunkBudget() {
+		return chunkBudget;
+	}
+
+	/**
+	 * Sets the maximal estimated size of one transaction. Works with many references 
+	 * will be split between transactions to stay in the budget.
+	 * @param chunkBudget size in bytes
+	 */
+	public void setChunkBudget(long chunkBudget) {
+		this.chunkBudget = chunkBudget;
+	}
+
+	public int getScanPageSize() {
+		return scanPageSize;
+	}
+
+	/**
+	 * Sets the number of labelled source nodes read in a single read transaction.
+	 * Ids of the labelled nodes are read by the label scan before the pages.
+	 * All nodes are passed as projections of the label scan either way, paging only 
+	 * shortens the transactions of a very long scan.
+	 * @param scanPageSize page size or 0 to scan all nodes in one transaction, the default
+	 */
+	public void setScanPageSize(int scanPageSize) {
+		this.scanPageSize = scanPageSize;
+	}
+
+	public int getScanThreads() {
+		return scanThreads;
+	}
+
+	/**
+	 * Sets the number of threads scanning source nodes. Every thread reads 
+	 * partitions of the scan page size, or 100000 nodes if the scan is not paged, 
+	 * in its own transaction.
+	 * @param scanThreads number of threads, 1 scans the nodes sequentially
+	 */
+	public void setScanThreads(int scanThreads) {
+		this.scanThreads = scanThreads;
+	}
+
+	public boolean isBulk() {
+		return bulk;
+	}
+
+	/**
+	 * Enables bulk mode, where works are imported by the batch inserter after the scan.
+	 * The Neo4j database will be shut down for the import, checkpoints are not used.
+	 * Bulk mode is intended for the first run and full rebuilds.
+	 * @param bulk
+	 */
+	public void setBulk(boolean bulk) {
+		this.bulk = bulk;
+	}
+
+	public WorkCache getWorkCache() {
+		return workCache;
+	}
+
+	/**
+	 * Sets the local cache of resolved works, what will be consulted before MySQL.
+	 * Cached works resolved again since the last run are replaced at the start of the run,
+	 * the cache will be closed at the end of the run.
+	 * @param workCache cache or null to load all works from MySQL
+	 */
+	public void setWorkCache(WorkCache workCache) {
+		this.workCache = workCache;
+	}
+
+	public ResolvedFilter getResolvedFilter() {
+		return resolvedFilter;
+	}
+
+	/**
+	 * Sets the filter of resolved DOIs. DOIs rejected by the filter will be requested
+	 * without a MySQL lookup. The filter is updated at the start of the run.
+	 * @param resolvedFilter filter or null to look up every DOI
+	 */
+	public void setResolvedFilter(ResolvedFilter resolvedFilter) {
+		this.resolvedFilter = resolvedFilter;
+	}
+
+	public String getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * Sets how the referenced DOIs are resolved: by point lookups of every DOI, by one scan
+	 * of the doi_resolution and doi_author tables or automatically, by the scan threshold.
+	 * Pipelined mode and incremental runs continuing from a watermark always use point lookups.
+	 * @param resolution one of RESOLUTION_AUTO, RESOLUTION_LOOKUP or RESOLUTION_SCAN
+	 */
+	public void setResolution(String resolution) {
+		this.resolution = resolution;
+	}
+
+	public double getScanThreshold() {
+		return scanThreshold;
+	}
+
+	/**
+	 * Sets the ratio of referenced DOIs to doi_resolution rows, from which the automatic
+	 * resolution will scan the tables instead of looking up every DOI.
+	 * @param scanThreshold
+	 */
+	public void setScanThreshold(double scanThreshold) {
+		this.scanThreshold = scanThreshold;
+	}
+
+	public MetricRegistry getMetrics() {
+		return metrics;
+	}
+
+	public boolean isJmx() {
+		return jmx;
+	}
+
+	/**
+	 * Enables publishing of the run metrics over JMX while the run continues. 
+	 * The metrics are printed at the end of the run anyway.
+	 * @param jmx
+	 */
+	public void setJmx(boolean jmx) {
+		this.jmx = jmx;
+	}
+
+	public long getProgressInterval() {
+		return progressInterval;
+	}
+
+	/**
+	 * Sets how often the progress of the scan and the import will be printed.
+	 * @param progressInterval time in milliseconds or 0 to disable progress reports
+	 */
+	public void setProgressInterval(long progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+
+	public String getUnresolvedReport() {
+		return unresolvedReport;
+	}
+
+	/**
+	 * Sets the file, where relationships still unresolved after the import will be written.
+	 * @param unresolvedReport file name or null to skip the report
+	 */
+	public void setUnresolvedReport(String unresolvedReport) {
+		this.unresolvedReport = unresolvedReport;
+	}
+
 	public void processNodes(String source, String property, String relationship) throws Exception {
-		Map<String, Set<GraphKey>> references = new HashMap<String, Set<GraphKey>>();
+		if (jmx) {
+			metrics.publish();
+			System.out.println("Metrics has been published over JMX in the " + MetricRegistry.JMX_DOMAIN + " domain");
+		}
 		
-		processedNodes  = 0;
+		if (null != workCache)
+			System.out.println(workCache.refresh(conn, batchSize) + " of " + workCache.size() 
+					+ " cached works has been resolved again since the last run");
 		
-		neo4j.createIndex(source, property);
-		neo4j.enumrateAllNodesWithLabelAndProperty(source, property, (tx, node) -> {
-			String keyValue = (String) node.getProperty(GraphUtils.PROPERTY_KEY);
-			GraphKey key = new GraphKey(source, keyValue);
-			Object dois = node.getProperty(property);
-			
-			if (dois instanceof String) {
+		if (null != workCache)
+			metrics.gauge(METRIC_CACHE_HITS, workCache::getHits);
+		
+		if (null != resolvedFilter) {
+			metrics.gauge(METRIC_FILTER_SKIPPED, resolvedFilter::getSkipped);
 			
-				loadDOI(key, (String)dois, references); 	
+			long started = System.nanoTime();
+			boolean rebuilt = resolvedFilter.update(conn);
+			System.out.println("The resolved filter has been " + (rebuilt ? "rebuilt" : "updated") + " in " 
+					+ (System.nanoTime() - started) / 1000000 + " ms, " + resolvedFilter.getInserted() + " DOIs");
+		}
+		
+		try {
+			if (null != watermark)
+				processNodesIncremental(source, property, relationship);
+			else
+				processAllNodes(source, property, relationship);
 			
-			} else if (dois instanceof String[]) {
+			if (null != workCache)
+				workCache.printStatistics(System.out);
+			if (null != resolvedFilter)
+				resolvedFilter.printStatistics(System.out);
 			
-				for (String doi : (String[])dois)
-					loadDOI(key, doi, references);
-				
-			}
+			System.out.println("Metrics:");
+			metrics.printStatistics(System.out);
+		} finally {
+			metrics.close();
+			if (null != workCache)
+				workCache.close();
+		}
+	}
+	
+	private void processAllNodes(String source, String property, String relationship) throws Exception {
+		if (pipelined) {
+			processNodesPipelined(source, property, relationship);
+			return;
+		}
+		
+		ReferenceTable references = new ReferenceTable();
+		metrics.gauge(METRIC_REFERENCED_DOIS, references::size);
+		
+		processedNodes  = 0;
+		
+		neo4j.createIndex(source, property);
+		enumrateNodes(source, property, projection -> {
+			loadDOIs(projection.getNodeId(), projection.getValue(), references);
 			
 			++processedNodes;
 									
 			return true;
 		});
 		
-		System.out.println("Processed " + processedNodes + " nodes");
+		System.out.println("Processed " + processedNodes + " nodes, found " + references.size() 
+				+ " DOIs and " + references.getReferencesCount() + " references");
 		
-		processDOI(source, relationship, references);
-	}
-	
-	private void loadDOI(GraphKey key, String ref, Map<String, Set<GraphKey>> references) {
-		String doi = GraphUtils.extractDoi(ref);
-		if (null != doi) {
-			Set<GraphKey> ids = references.get(doi);
-			if (null == ids) 
-				references.put(doi, ids = new HashSet<GraphKey>());
-			ids.add(key);					
+		if (!bulk) {
+			processDOI(source, property, relationship, references);
+			return;
+		}
+		
+		try (Neo4jBatchImporter batch = openBatchImporter()) {
+			importer = batch;
+			
+			processDOI(source, property, relationship, references);
 		}
 	}
 	
-	private void processDOI(String source, String relationship, Map<String, Set<GraphKey>> references) throws SQLException {
-		Graph graph = new Graph();
+	/**
+	 * Function to shut down the Neo4j database and open it by the batch importer. 
+	 * Keys of existing crossref nodes are loaded before, so these nodes will be updated instead of created again.
+	 */
+	private Neo4jBatchImporter openBatchImporter() throws Exception {
+		Map<GraphKey, Long> existing = new HashMap<GraphKey, Long>();
+		neo4j.enumrateAllNodesWithLabelAndProperties(SOURCE_CROSSREF, new String[] { GraphUtils.PROPERTY_KEY }, projection -> {
+			existing.put(new GraphKey(SOURCE_CROSSREF, projection.getKey()), projection.getNodeId());
+			
+			return true;
+		});
+		
+		System.out.println("Found " + existing.size() + " existing " + SOURCE_CROSSREF + " nodes, switching to the batch importer");
+		
+		UnresolvedRelationshipStore store = neo4j.getUnresolvedRelationshipStore();
+		int relationshipCacheSize = neo4j.getRelationshipCacheSize();
+		boolean verbose = neo4j.isVerbose();
+		neo4j.shutdown();
 		
-		graph.addSchema(new GraphSchema(source, GraphUtils.PROPERTY_KEY, true));
-		graph.addSchema(new GraphSchema(source, GraphUtils.PROPERTY_DOI, false));
-		graph.addSchema(new GraphSchema(source, GraphUtils.PROPERTY_URL, false));
+		Neo4jBatchImporter batch = new Neo4jBatchImporter(neo4jFolder);
+		batch.setVerbose(verbose);
+		batch.setRelationshipCacheSize(relationshipCacheSize);
+		batch.setUnresolvedRelationshipStore(store);
+		batch.preload(existing);
+		batch.setMetrics(metrics);
 		
-		int chunks = 0;
-		for (Map.Entry<String, Set<GraphKey>> entry : references.entrySet()) {
+		return batch;
+	}
+	
+	/**
+	 * Function to link only works resolved since the last run. Source nodes referencing
+	 * the works are found by the property index, the first run without a watermark will process all nodes.
+	 */
+	private void processNodesIncremental(String source, String property, String relationship) throws Exception {
+		Timestamp since = watermark.load();
+		if (null == since) {
+			System.out.println("No watermark has been found in " + watermark.getPath() + ", processing all nodes");
+			
+			// works resolved during the run will be processed again by the next run
+			Timestamp last = WorkResolver.getLastResolved(conn);
+			processAllNodes(source, property, relationship);
+			if (null != last)
+				watermark.save(last);
 			
-			Work work = loadWork(entry.getKey());
+			return;
+		}
+		
+		System.out.println("Processing works resolved since " + since);
+		
+		long[] linked = { 0, 0 };
+		ChunkController chunking = createChunkController();
+		ChunkConsumer importer = (g, processed) -> {
+			System.out.println("importing chunk: " + (chunking.getChunks() + 1));
+			neo4j.importGraph(g);
+		};
+		
+		neo4j.createIndex(source, property);
+		neo4j.importSchemas(createSchemas(source));
+		
+		try (WorkResolver resolver = new WorkResolver(conn, batchSize)) {
+			resolver.setMetrics(metrics);
 			
-			if (work.isResolved()) {
-				GraphNode workNode = work.toNode();
+			long works = resolver.loadResolvedWorks(since, (block, resolved) -> {
+				Map<String, Work> dois = new HashMap<String, Work>();
+				Set<String> values = new LinkedHashSet<String>();
+				for (Work work : block) {
+					dois.put(DoiFingerprint.normalize(work.getDoi()), work);
+					addDoiVariants(values, work.getDoi());
+				}
 				
-				graph.addNode(workNode);
+				ReferenceTable references = new ReferenceTable();
+				neo4j.enumrateAllNodesWithLabelAndPropertyValues(source, property, values, (tx, node) -> {
+					loadDOIs(node.getId(), node.getProperty(property, null), dois, references);
+					
+					return true;
+				});
 				
-				for (Author author : work.getAuthors()) {
-					GraphNode authorNode = author.toNode(work);
+				Graph graph = new Graph();
+				for (int entry = 0; entry < references.size(); ++entry) {
+					graph = addWork(graph, source, relationship, dois.get(references.getDoi(entry)), references.getNodeIds(entry),
+							chunking, importer, entry);
 					
-					graph.addNode(authorNode);
-					graph.addRelationship(createRelationship(relationship, authorNode.getKey(), workNode.getKey()));
+					if (chunking.isFull())
+						graph = flush(graph, chunking, importer, entry + 1, false);
 				}
 				
-				for (GraphKey key : entry.getValue()) {
-					graph.addRelationship(createRelationship(relationship, workNode.getKey(), key));
+				if (!chunking.isEmpty())
+					flush(graph, chunking, importer, references.size(), false);
+				
+				linked[0] += references.size();
+				linked[1] += references.getReferencesCount();
+				
+				// everything up to this work has been imported
+				watermark.save(resolved);
+			});
+			
+			System.out.println(works + " works has been resolved since " + since + ", " + linked[0] 
+					+ " of them has been linked to " + linked[1] + " nodes.");
+			
+			neo4j.printStatistics(System.out);
+			chunking.printStatistics(System.out);
+			printUnresolvedRelationships();
+		}
+	}
+	
+	/**
+	 * Function to add all spellings of a DOI, what can be stored in the property
+	 */
+	private static void addDoiVariants(Set<String> values, String doi) {
+		for (String prefix : DOI_PREFIXES) {
+			values.add(prefix + doi);
+			values.add(prefix + DoiFingerprint.normalize(doi));
+		}
+	}
+	
+	private void processNodesPipelined(String source, String property, String relationship) throws Exception {
+		Pipeline pipeline = new Pipeline();
+		BlockingQueue<ReferenceBatch> references = pipeline.createQueue("references", queueCapacity);
+		BlockingQueue<GraphBatch> graphs = pipeline.createQueue("graphs", queueCapacity);
+		metrics.gauge(METRIC_QUEUE + "references", references::size);
+		metrics.gauge(METRIC_QUEUE + "graphs", graphs::size);
+		List<WorkerStatistics> workers = new ArrayList<WorkerStatistics>();
+		// the total grows until the scan has finished
+		Counter queuedDois = new Counter();
+		// in ordered mode, batches not yet imported, so the writer never holds more than the window
+		Semaphore window = new Semaphore(queueCapacity + resolverWorkers);
+		
+		processedNodes  = 0;
+		
+		neo4j.createIndex(source, property);
+		neo4j.importSchemas(createSchemas(source));
+		
+		try (WorkRequester requester = new WorkRequester(DriverManager.getConnection(url), requestBatchSize, requestFlushInterval)) {
+			requester.setMetrics(metrics);
+			
+			pipeline.start("scanner", () -> {
+				ReferenceTable[] batch = { new ReferenceTable() };
+				long[] sequence = { 0 };
+				
+				enumrateNodes(source, property, projection -> {
+					loadDOIs(projection.getNodeId(), projection.getValue(), batch[0]);
+					
+					++processedNodes;
+					
+					if (batch[0].size() >= batchSize) {
+						if (ordered)
+							pipeline.acquire(window);
+						queuedDois.add(batch[0].size());
+						pipeline.put(references, new ReferenceBatch(sequence[0]++, batch[0]));
+						batch[0] = new ReferenceTable();
+					}
+					
+					return true;
+				});
+				
+				if (!batch[0].isEmpty()) {
+					if (ordered)
+						pipeline.acquire(window);
+					queuedDois.add(batch[0].size());
+					pipeline.put(references, new ReferenceBatch(sequence[0]++, batch[0]));
 				}
 				
-				if (graph.getObjectsCount() >= 1000) {
-					System.out.println("importing chunk: " + (++chunks));
+				// every worker will stop after receiving one end marker
+				for (int i = 0; i < resolverWorkers; ++i)
+					pipeline.put(references, END_OF_REFERENCES);
+				
+				System.out.println("Processed " + processedNodes + " nodes");
+			});
+			
+			for (int i = 1; i <= resolverWorkers; ++i) {
+				WorkerStatistics statistics = new WorkerStatistics("resolver-" + i);
+				workers.add(statistics);
+				
+				pipeline.start(statistics.getName(), () -> {
+					try (Connection connection = DriverManager.getConnection(url);
+						 WorkResolver resolver = new WorkResolver(connection, batchSize, workCache, resolvedFilter)) {
+						resolver.setMetrics(metrics);
+						
+						// chunks are imported by the writer, so the resolver can not measure commits
+						ChunkController chunking = ChunkController.fixed(chunkSize, chunkBudget);
+						
+						ReferenceBatch batch;
+						while (END_OF_REFERENCES != (batch = pipeline.take(references))) {
+							long started = System.nanoTime();
+							
+							List<Graph> chunks = new ArrayList<Graph>();
+							Graph graph = resolveReferences(resolver, requester, batch.references, null, 0, batch.references.size(), 
+									source, relationship, new Graph(), chunking, (g, processed) -> chunks.add(g));
+							if (!chunking.isEmpty()) {
+								chunks.add(graph);
+								chunking.commit(0, false);
+							}
+							
+							statistics.addBatch(batch.references.size(), chunks.size(), System.nanoTime() - started);
+							
+							pipeline.put(graphs, new GraphBatch(batch.sequence, chunks));
+						}
+						
+						pipeline.put(graphs, END_OF_GRAPHS);
+					}
+				});
+			}
+			
+			pipeline.start("writer", () -> {
+				// batches waiting for their predecessors in ordered mode, bounded by the window
+				Map<Long, GraphBatch> pending = new HashMap<Long, GraphBatch>();
+				long next = 0;
+				int chunks = 0;
+				int finished = 0;
 				
-					neo4j.importGraph(graph);
-					graph = new Graph();
+				while (finished < resolverWorkers) {
+					GraphBatch batch = pipeline.take(graphs);
+					if (END_OF_GRAPHS == batch) {
+						++finished;
+						continue;
+					}
+					
+					if (ordered) {
+						pending.put(batch.sequence, batch);
+						while (null != (batch = pending.remove(next))) {
+							++next;
+							chunks = importChunks(batch.graphs, chunks);
+							window.release();
+						}
+					} else 
+						chunks = importChunks(batch.graphs, chunks);
 				}
-			} else if (!work.isCreated()) {
-				requestWork(work.getDoi());
+			});
+			
+			Counter resolvedDois = metrics.counter(WorkResolver.METRIC_DOIS);
+			ProgressReporter progress = new ProgressReporter("Import", "DOIs", resolvedDois::getCount, 
+					queuedDois::getCount, progressInterval, System.out);
+			try {
+				pipeline.join();
+			} finally {
+				progress.close();
 			}
+			
+			// flush pending requests before printing the statistics
+			requester.flush();
+			
+			neo4j.printStatistics(System.out);
+			requester.printStatistics(System.out);
+			pipeline.printStatistics(System.out);
+			printUnresolvedRelationships();
+			System.out.println(workers.size() + " resolver workers has been used (" + (ordered ? "ordered" : "unordered") + ").");
+			for (WorkerStatistics worker : workers)
+				System.out.println(worker);
 		}
+	}
+	
+	/**
+	 * Function to enumerate source nodes having the property, in pages of node ids if enabled,
+	 * otherwise by the label scan in a single transaction.
+	 * Several scan threads will pass the nodes to the consumer one at a time.
+	 */
+	private void enumrateNodes(String source, String property, ProcessProjection processProjection) throws Exception {
+		long started = System.nanoTime();
+		long nodes;
 		
-		if (graph.getObjectsCount() > 0) {
-			System.out.println("importing final chunk");
+		// nodes without the property are not counted by the scan, so the total is an upper bound
+		ProgressReporter progress = new ProgressReporter("Scan", "nodes", scannedNodes::getCount, 
+				neo4j.getNodesCount(source), progressInterval);
+		try {
+			String[] properties = { property };
+			if (scanThreads > 1) {
+				Object lock = new Object();
+				nodes = neo4j.enumrateAllNodesWithLabelAndPropertiesParallel(source, properties, scanThreads, 
+						scanPageSize > 0 ? scanPageSize : DEFAULT_SCAN_PARTITION_SIZE, projection -> {
+					scannedNodes.increment();
+					synchronized (lock) {
+						return processProjection.processProjection(projection);
+					}
+				});
+			} else {
+				long[] count = { 0 };
+				ProcessProjection counter = projection -> {
+					++count[0];
+					scannedNodes.increment();
+					return processProjection.processProjection(projection);
+				};
+				
+				if (scanPageSize > 0)
+					neo4j.enumrateAllNodesWithLabelAndProperties(source, properties, 0, scanPageSize, counter);
+				else
+					neo4j.enumrateAllNodesWithLabelAndProperties(source, properties, counter);
+				nodes = count[0];
+			}
+		} finally {
+			progress.close();
+		}
+		
+		long elapsed = Math.max(1, (System.nanoTime() - started) / 1000000);
+		System.out.println(String.format("Scanned %d nodes in %d ms, %d nodes/sec, %d threads", 
+				nodes, elapsed, nodes * 1000 / elapsed, Math.max(1, scanThreads)));
+	}
+	
+	private void printUnresolvedRelationships() throws FileNotFoundException {
+		if (StringUtils.isEmpty(unresolvedReport))
+			return;
+		
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(unresolvedReport)))) {
+			importer.printUnresolvedRelationships(out);
+		}
+		
+		System.out.println("Unresolved relationships has been written to " + unresolvedReport);
+	}
+	
+	private int importChunks(List<Graph> graphs, int chunks) {
+		for (Graph graph : graphs) {
+			System.out.println("importing chunk: " + (++chunks));
+			
 			neo4j.importGraph(graph);
 		}
 		
-		neo4j.printStatistics(System.out);
+		return chunks;
 	}
 	
-	private GraphRelationship createRelationship(String relationship, GraphKey a, GraphKey b) { 
-		return GraphRelationship.builder()
-				.withRelationship(GraphUtils.RELATIONSHIP_RELATED_TO)
-				.withStart(a)
-				.withEnd(b)
-				.build();
+	private void loadDOIs(long nodeId, Object dois, ReferenceTable references) {
+		if (dois instanceof String) {
+			
+			loadDOI(nodeId, (String)dois, references); 	
+		
+		} else if (dois instanceof String[]) {
+		
+			for (String doi : (String[])dois)
+				loadDOI(nodeId, doi, references);
+			
+		}
 	}
 	
-	private Work loadWork(String doi) throws SQLException {
-		Work work = new Work(doi);
-				
-		selectWork.setString(1, doi);
-		try (ResultSet rsWork = selectWork.executeQuery()) {
-			if (rsWork.next()) {
-				work.setResolutionId(rsWork.getLong(1));
-				work.setCreated(rsWork.getDate(7));
-				work.setResolved(rsWork.getDate(8));
+	/**
+	 * Function to add references to the known DOIs only, the table will use normalized DOIs
+	 */
+	private void loadDOIs(long nodeId, Object refs, Map<String, Work> dois, ReferenceTable references) {
+		String[] array = refs instanceof String ? new String[] { (String) refs } 
+			: refs instanceof String[] ? (String[]) refs : new String[0];
+		
+		for (String ref : array) {
+			String doi = GraphUtils.extractDoi(ref);
+			if (null != doi && dois.containsKey(doi = DoiFingerprint.normalize(doi)))
+				references.add(doi, nodeId);
+		}
+	}
+	
+	private void loadDOI(long nodeId, String ref, ReferenceTable references) {
+		String doi = GraphUtils.extractDoi(ref);
+		if (null != doi) 
+			references.add(doi, nodeId);
+	}
+	
+	private void processDOI(String source, String property, String relationship, ReferenceTable references) throws Exception {
+		Graph graph = new Graph();
+		graph.setSchemas(createSchemas(source));
+		
+		// checkpoints need the same order of DOIs in every run
+		int[] entries = references.getSortedEntries();
+		int start = 0;
+		int[] chunks = { 0 };
+		ChunkController chunking = createChunkController();
+		
+		if (null != checkpoint) {
+			String parameters = "source=" + source + " property=" + property + " relationship=" + relationship;
+			Checkpoint.Position position = resume ? checkpoint.load(parameters) : null;
+			if (null != position) {
+				start = findPosition(references, entries, position.getDoi());
+				chunks[0] = position.getChunk();
 				
-				if (work.isResolved()) {
-					work.setSource(rsWork.getString(2));
-					work.setSourceUrl(rsWork.getString(3));
-					work.setUrl(rsWork.getString(4));
-					work.setTitle(rsWork.getString(5));
-					work.setYear(rsWork.getInt(6));
+				System.out.println("Resuming from " + position + ", skipping " + start + " of " + entries.length + " DOIs");
+				checkpoint.resume();
+			} else
+				checkpoint.start(parameters);
+		}
+		
+		try (WorkRequester requester = new WorkRequester(DriverManager.getConnection(url), requestBatchSize, requestFlushInterval);
+			 WorkResolver resolver = new WorkResolver(conn, batchSize, workCache, resolvedFilter)) {
+			requester.setMetrics(metrics);
+			resolver.setMetrics(metrics);
+			
+			boolean scan = isScanPreferred(entries.length - start);
+			
+			Counter resolvedDois = metrics.counter(WorkResolver.METRIC_DOIS);
+			ProgressReporter progress = new ProgressReporter("Import", "DOIs", resolvedDois::getCount, 
+					entries.length - start, progressInterval);
+			try {
+				if (scan) {
+					// works are scanned in the table order, so an interrupted scan will be resumed 
+					// from its start and the imported works will be merged again
+					Graph[] scanned = { graph };
+					ChunkConsumer consumer = (g, processed) -> {
+						System.out.println("importing chunk: " + (++chunks[0]));
+						
+						importer.importGraph(g);
+					};
 					
-					selectAuthors.setLong(1, work.getResolutionId());
-					try (ResultSet rsAuthor = selectAuthors.executeQuery()) {
-						while (rsAuthor.next()) {
-							Author author = new Author();
+					resolver.scanWorks(references, entries, start, entries.length, (work, position) -> {
+						scanned[0] = processWork(requester, work, references.getNodeIds(entries[position]), 
+								source, relationship, scanned[0], chunking, consumer, position);
+					}).printStatistics(System.out);
+					graph = scanned[0];
+				} else
+					for (int from = start; from < entries.length; from += batchSize) {
+						graph = resolveReferences(resolver, requester, references, entries, from, Math.min(from + batchSize, entries.length), 
+								source, relationship, graph, chunking, (g, processed) -> {
+							System.out.println("importing chunk: " + (++chunks[0]));
 							
-							author.setFirstName(rsAuthor.getString(1));
-							author.setLastName(rsAuthor.getString(2));
-							author.setFullName(rsAuthor.getString(3));
-							author.setOrcid(rsAuthor.getString(4));
-							
-							work.addAuthor(author);
-						}
+							importer.importGraph(g);
+							commitCheckpoint(requester, chunks[0], processed, processed > 0 ? references.getDoi(entries[processed - 1]) : "");
+						});
 					}
-				}
+			} finally {
+				progress.close();
+			}
+		
+			if (!chunking.isEmpty()) {
+				System.out.println("importing final chunk");
+				
+				long started = System.nanoTime();
+				importer.importGraph(graph);
+				chunking.commit(System.nanoTime() - started, false);
+			}
+			
+			// flush pending requests before printing the statistics
+			requester.flush();
+			
+			if (null != checkpoint)
+				checkpoint.complete();
+			
+			importer.printStatistics(System.out);
+			requester.printStatistics(System.out);
+			chunking.printStatistics(System.out);
+			printUnresolvedRelationships();
+		} finally {
+			if (null != checkpoint)
+				checkpoint.close();
+		}
+	}
+	
+	/**
+	 * Function to choose between point lookups and the scan of the tables. The row count is estimated
+	 * by the table statistics, what is precise enough to compare it with the number of DOIs.
+	 * @param dois number of DOIs to resolve
+	 * @return true if the tables should be scanned
+	 */
+	private boolean isScanPreferred(int dois) throws SQLException {
+		if (RESOLUTION_SCAN.equals(resolution))
+			return true;
+		if (RESOLUTION_LOOKUP.equals(resolution) || 0 == dois)
+			return false;
+		
+		long rows = WorkScanner.estimateRowCount(conn);
+		boolean scan = rows > 0 && dois >= rows * scanThreshold;
+		System.out.println(String.format("%d DOIs to resolve, about %d rows in doi_resolution (%.1f%%), using %s", 
+				dois, rows, rows > 0 ? dois * 100.0 / rows : 0.0, scan ? "the scan" : "point lookups"));
+		
+		return scan;
+	}
+	
+	private ChunkController createChunkController() {
+		return new ChunkController(chunkSize, Math.min(ChunkController.DEFAULT_MIN_CHUNK_SIZE, chunkSize), 
+				Math.max(ChunkController.DEFAULT_MAX_CHUNK_SIZE, chunkSize), chunkLatency, chunkBudget, true);
+	}
+	
+	/**
+	 * Function to pass a full graph to the consumer and record the commit time
+	 * @param split true if the last work of the graph continues in the next graph
+	 * @return new graph
+	 */
+	private Graph flush(Graph graph, ChunkController chunking, ChunkConsumer consumer, int processed, boolean split) throws Exception {
+		long started = System.nanoTime();
+		consumer.accept(graph, processed);
+		chunking.commit(System.nanoTime() - started, split);
+		
+		return new Graph();
+	}
+	
+	/**
+	 * Function to record a committed chunk. Requests of unknown DOIs are written first,
+	 * because a resumed run will not request DOIs before the checkpoint again.
+	 */
+	private void commitCheckpoint(WorkRequester requester, int chunk, int processed, String doi) throws Exception {
+		if (null != checkpoint) {
+			requester.flush();
+			checkpoint.commit(chunk, processed, doi);
+		}
+	}
+	
+	/**
+	 * Function to find the first position after a DOI in the sorted entries
+	 */
+	private static int findPosition(ReferenceTable references, int[] entries, String doi) {
+		int low = 0;
+		int high = entries.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (references.compareDoi(entries[middle], doi) <= 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * Function to resolve a range of positions in the reference table and add resolved works to the graph.
+	 * Unknown DOIs will be requested.
+	 * @param entries entry numbers in the processing order or null to process entries in the table order
+	 * @return the graph to continue with, every full graph is passed to the chunk consumer and replaced by a new one
+	 */
+	private Graph resolveReferences(WorkResolver resolver, WorkRequester requester, ReferenceTable references, int[] entries, int from, int to,
+			String source, String relationship, Graph graph, ChunkController chunking, ChunkConsumer consumer) throws Exception {
+		List<String> dois = new ArrayList<String>(to - from);
+		for (int position = from; position < to; ++position)
+			dois.add(references.getDoi(null == entries ? position : entries[position]));
+		
+		Map<String, Work> works = resolver.loadWorks(dois);
+		
+		for (int position = from; position < to; ++position)
+			graph = processWork(requester, works.get(dois.get(position - from)), 
+					references.getNodeIds(null == entries ? position : entries[position]), 
+					source, relationship, graph, chunking, consumer, position);
+		
+		return graph;
+	}
+	
+	/**
+	 * Function to add a resolved work to the graph or to request an unknown DOI
+	 * @return the graph to continue with
+	 */
+	private Graph processWork(WorkRequester requester, Work work, long[] nodeIds, String source, String relationship, 
+			Graph graph, ChunkController chunking, ChunkConsumer consumer, int position) throws Exception {
+		if (work.isResolved()) {
+			graph = addWork(graph, source, relationship, work, nodeIds, chunking, consumer, position);
+			
+			if (chunking.isFull())
+				graph = flush(graph, chunking, consumer, position + 1, false);
+		} else if (!work.isCreated()) {
+			requester.requestWork(work.getDoi());
+		}
+		
+		return graph;
+	}
+	
+	private List<GraphSchema> createSchemas(String source) {
+		List<GraphSchema> schemas = new ArrayList<GraphSchema>();
+		
+		schemas.add(new GraphSchema(source, GraphUtils.PROPERTY_KEY, true));
+		schemas.add(new GraphSchema(source, GraphUtils.PROPERTY_DOI, false));
+		schemas.add(new GraphSchema(source, GraphUtils.PROPERTY_URL, false));
+		
+		return schemas;
+	}
+	
+	/**
+	 * Function to add a work to the graph. A work referenced by too many nodes will be split:
+	 * the full graph is passed to the consumer and the rest of the references is added to a new one.
+	 * @param position position of the work, what is not completely processed in a split graph 
+	 * @return the graph to continue with
+	 */
+	private Graph addWork(Graph graph, String source, String relationship, Work work, long[] nodeIds, 
+			ChunkController chunking, ChunkConsumer consumer, int position) throws Exception {
+		GraphNode workNode = work.toNode();
+		
+		graph.addNode(workNode);
+		chunking.addNode(workNode);
+		
+		for (Author author : work.getAuthors()) {
+			GraphNode authorNode = author.toNode(work);
+			
+			graph.addNode(authorNode);
+			graph.addRelationship(createRelationship(relationship, authorNode.getKey(), workNode.getKey()));
+			chunking.addNode(authorNode);
+			chunking.addRelationship();
+		}
+		
+		for (long nodeId : nodeIds) {
+			if (chunking.isFull()) {
+				// the work node is merged again, so the rest of the references can be resolved in the next graph
+				graph = flush(graph, chunking, consumer, position, true);
+				graph.addNode(workNode);
+				chunking.addNode(workNode);
 			}
+			
+			graph.addRelationship(createRelationship(relationship, workNode.getKey(), 
+					new GraphKey(source, GraphUtils.PROPERTY_NODE_ID, nodeId)));
+			chunking.addRelationship();
 		}
 		
-		return work;
+		return graph;
 	}
 	
-	private boolean requestWork(String doi) throws SQLException {
-		requestWork.setString(1, doi); 
-		return requestWork.execute();
+	private GraphRelationship createRelationship(String relationship, GraphKey a, GraphKey b) { 
+		return GraphRelationship.builder()
+				.withRelationship(GraphUtils.RELATIONSHIP_RELATED_TO)
+				.withStart(a)
+				.withEnd(b)
+				.build();
 	}
 }
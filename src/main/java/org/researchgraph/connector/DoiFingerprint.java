@@ -0,0 +1,51 @@
+package org.researchgraph.connector;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * A class to compute the fixed width fingerprint of a DOI
+ *
+ * The fingerprint is the first 60 bits of MD5 hash of the lower case DOI,
+ * so it is always a positive signed 64 bit number. It is stored
+ * in the doi_resolution.doi_hash column and must stay identical to the SQL expression {@link #SQL}
+ * used by the triggers and the migration.
+ *
+ * The fingerprint is not unique, the full DOI must be compared after a lookup.
+ */
+
+public class DoiFingerprint {
+	public static final String SQL = "CONV(LEFT(MD5(LOWER(%s)), 15), 16, 10)";
+
+	// MySQL latin1 charset is cp1252, what has characters like en dash or quotes above 0x7f
+	private static final Charset CHARSET = Charset.forName("windows-1252");
+
+	private static final ThreadLocal<MessageDigest> md5 = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	public static long of(String doi) {
+		// doi_resolution uses latin1 charset, so MySQL hashes cp1252 bytes
+		byte[] digest = md5.get().digest(normalize(doi).getBytes(CHARSET));
+
+		long hash = 0;
+		for (int i = 0; i < 8; ++i)
+			hash = (hash << 8) | (digest[i] & 0xff);
+
+		return hash >>> 4;
+	}
+
+	public static String normalize(String doi) {
+		return doi.toLowerCase(Locale.ROOT);
+	}
+
+	public static String sql(String column) {
+		return String.format(SQL, column);
+	}
+}
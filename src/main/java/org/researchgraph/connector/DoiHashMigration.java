@@ -0,0 +1,141 @@
+package org.researchgraph.connector;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A class to add the doi_hash fingerprint column to an existing doi_resolution table
+ *
+ * The migration is idempotent and can be interrupted and restarted at any time:
+ *  - adds the doi_hash column if it does not exists
+ *  - creates insert and update triggers, what will maintain the fingerprint for every writer
+ *  - backfills the fingerprint in id ranges, each range is committed separately
+ *  - creates the doi_hash index after the backfill
+ */
+
+public class DoiHashMigration {
+	public static final String TABLE = "doi_resolution";
+	public static final String COLUMN = "doi_hash";
+	public static final String INDEX = "doi_hash";
+	public static final String TRIGGER_INSERT = "doi_resolution_hash_insert";
+	public static final String TRIGGER_UPDATE = "doi_resolution_hash_update";
+	public static final int DEFAULT_RANGE_SIZE = 10000;
+
+	private final Connection conn;
+	private int rangeSize = DEFAULT_RANGE_SIZE;
+
+	public DoiHashMigration(Connection conn) {
+		this.conn = conn;
+	}
+
+	public int getRangeSize() {
+		return rangeSize;
+	}
+
+	public void setRangeSize(int rangeSize) {
+		this.rangeSize = rangeSize;
+	}
+
+	public static boolean isColumnExists(Connection conn) throws SQLException {
+		DatabaseMetaData meta = conn.getMetaData();
+		try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, TABLE, COLUMN)) {
+			return rs.next();
+		}
+	}
+
+	public static boolean isIndexExists(Connection conn) throws SQLException {
+		DatabaseMetaData meta = conn.getMetaData();
+		try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), null, TABLE, false, true)) {
+			while (rs.next())
+				if (INDEX.equals(rs.getString("INDEX_NAME")))
+					return true;
+		}
+
+		return false;
+	}
+
+	public static boolean isTriggerExists(Connection conn, String trigger) throws SQLException {
+		try (PreparedStatement select = conn.prepareStatement("SELECT 1 FROM information_schema.TRIGGERS WHERE TRIGGER_SCHEMA=DATABASE() AND TRIGGER_NAME=?")) {
+			select.setString(1, trigger);
+			try (ResultSet rs = select.executeQuery()) {
+				return rs.next();
+			}
+		}
+	}
+
+	/**
+	 * Function to test if the doi_resolution table is ready for fingerprint lookups
+	 * @param conn Connection
+	 * @return true if the column and the index exists and every row has a fingerprint
+	 * @throws SQLException
+	 */
+	public static boolean isMigrated(Connection conn) throws SQLException {
+		if (!isColumnExists(conn) || !isIndexExists(conn))
+			return false;
+
+		try (Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + TABLE + " WHERE " + COLUMN + " IS NULL LIMIT 1")) {
+			return !rs.next();
+		}
+	}
+
+	public void migrate(PrintStream out) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			if (!isColumnExists(conn)) {
+				out.println("Adding column " + COLUMN);
+				stmt.execute("ALTER TABLE " + TABLE + " ADD COLUMN " + COLUMN + " bigint(20) DEFAULT NULL AFTER doi");
+			}
+
+			if (!isTriggerExists(conn, TRIGGER_INSERT)) {
+				out.println("Creating trigger " + TRIGGER_INSERT);
+				stmt.execute("CREATE TRIGGER " + TRIGGER_INSERT + " BEFORE INSERT ON " + TABLE
+						+ " FOR EACH ROW SET NEW." + COLUMN + " = " + DoiFingerprint.sql("NEW.doi"));
+			}
+
+			if (!isTriggerExists(conn, TRIGGER_UPDATE)) {
+				out.println("Creating trigger " + TRIGGER_UPDATE);
+				stmt.execute("CREATE TRIGGER " + TRIGGER_UPDATE + " BEFORE UPDATE ON " + TABLE
+						+ " FOR EACH ROW SET NEW." + COLUMN + " = " + DoiFingerprint.sql("NEW.doi"));
+			}
+
+			long updated = backfill(stmt, out);
+			out.println(updated + " rows has been updated.");
+
+			if (!isIndexExists(conn)) {
+				out.println("Creating index " + INDEX);
+				stmt.execute("ALTER TABLE " + TABLE + " ADD KEY " + INDEX + " (" + COLUMN + ")");
+			}
+		}
+	}
+
+	private long backfill(Statement stmt, PrintStream out) throws SQLException {
+		long minId, maxId;
+		try (ResultSet rs = stmt.executeQuery("SELECT MIN(id), MAX(id) FROM " + TABLE)) {
+			if (!rs.next() || null == rs.getObject(1))
+				return 0;
+
+			minId = rs.getLong(1);
+			maxId = rs.getLong(2);
+		}
+
+		long updated = 0;
+		try (PreparedStatement update = conn.prepareStatement("UPDATE " + TABLE + " SET " + COLUMN + " = " + DoiFingerprint.sql("doi")
+				+ " WHERE id >= ? AND id < ? AND " + COLUMN + " IS NULL")) {
+			for (long from = minId; from <= maxId; from += rangeSize) {
+				update.setLong(1, from);
+				update.setLong(2, from + rangeSize);
+
+				updated += update.executeUpdate();
+
+				out.println("Backfilled ids up to " + Math.min(from + rangeSize - 1, maxId) + " of " + maxId);
+			}
+		}
+
+		return updated;
+	}
+}
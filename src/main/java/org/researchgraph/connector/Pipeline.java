@@ -0,0 +1,151 @@
+package org.researchgraph.connector;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A class to run stages of a pipeline, connected by bounded queues, in separate threads
+ *
+ * If any stage fails, all other stages will be cancelled the next time they wait on a queue.
+ * Threads are never interrupted, because an interrupt closes Neo4j store files.
+ *
+ * Queues created by the pipeline record their depth every time an item is taken.
+ */
+
+public class Pipeline {
+	private static final long POLL_INTERVAL = 100;
+
+	private final List<Thread> threads = new ArrayList<Thread>();
+	private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+	private final Map<BlockingQueue<?>, QueueStatistics> queues = new IdentityHashMap<BlockingQueue<?>, QueueStatistics>();
+	private final List<QueueStatistics> statistics = new ArrayList<QueueStatistics>();
+
+	public interface Stage {
+		void run() throws Exception;
+	}
+
+	private static class QueueStatistics {
+		final String name;
+		final int capacity;
+		final AtomicLong samples = new AtomicLong();
+		final AtomicLong total = new AtomicLong();
+		final AtomicLong max = new AtomicLong();
+
+		QueueStatistics(String name, int capacity) {
+			this.name = name;
+			this.capacity = capacity;
+		}
+
+		void sample(long depth) {
+			samples.incrementAndGet();
+			total.addAndGet(depth);
+			max.accumulateAndGet(depth, Math::max);
+		}
+	}
+
+	/**
+	 * Function to create a bounded queue. Queues must be created before any stage is started.
+	 */
+	public <T> BlockingQueue<T> createQueue(String name, int capacity) {
+		BlockingQueue<T> queue = new ArrayBlockingQueue<T>(capacity);
+		QueueStatistics queueStatistics = new QueueStatistics(name, capacity);
+
+		queues.put(queue, queueStatistics);
+		statistics.add(queueStatistics);
+
+		return queue;
+	}
+
+	public void start(String name, Stage stage) {
+		Thread thread = new Thread(() -> {
+			try {
+				stage.run();
+			} catch (CancellationException e) {
+				// other stage has failed
+			} catch (Throwable e) {
+				// errors are recorded as well, otherwise other stages would wait forever
+				error.compareAndSet(null, e);
+			}
+		}, name);
+
+		threads.add(thread);
+		thread.start();
+	}
+
+	public boolean isFailed() {
+		return null != error.get();
+	}
+
+	/**
+	 * Function to put an item into the queue, waiting while the queue is full
+	 * @throws CancellationException if other stage has failed
+	 */
+	public <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+		while (!queue.offer(item, POLL_INTERVAL, TimeUnit.MILLISECONDS))
+			checkFailed();
+	}
+
+	/**
+	 * Function to take an item from the queue, waiting while the queue is empty
+	 * @throws CancellationException if other stage has failed
+	 */
+	public <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+		T item;
+		while (null == (item = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS)))
+			checkFailed();
+
+		QueueStatistics queueStatistics = queues.get(queue);
+		if (null != queueStatistics)
+			queueStatistics.sample(queue.size() + 1);
+
+		return item;
+	}
+
+	/**
+	 * Function to acquire a permit of the semaphore, waiting while no permit is available
+	 * @throws CancellationException if other stage has failed
+	 */
+	public void acquire(Semaphore semaphore) throws InterruptedException {
+		while (!semaphore.tryAcquire(POLL_INTERVAL, TimeUnit.MILLISECONDS))
+			checkFailed();
+	}
+
+	/**
+	 * Function to wait for all stages to finish
+	 * @throws Exception the first exception thrown by any stage
+	 * @throws Error the first error thrown by any stage
+	 */
+	public void join() throws Exception {
+		for (Thread thread : threads)
+			thread.join();
+
+		Throwable e = error.get();
+		if (e instanceof Exception)
+			throw (Exception) e;
+		if (e instanceof Error)
+			throw (Error) e;
+	}
+
+	public void printStatistics(PrintStream out) {
+		for (QueueStatistics queue : statistics) {
+			long samples = queue.samples.get();
+			out.println(String.format("Queue %s: capacity %d, average depth %.1f, max depth %d.",
+					queue.name, queue.capacity, 0 == samples ? 0.0 : (double) queue.total.get() / samples, queue.max.get()));
+		}
+	}
+
+	private void checkFailed() {
+		if (isFailed())
+			throw new CancellationException("Pipeline has failed");
+	}
+}
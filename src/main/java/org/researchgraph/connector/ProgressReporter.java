@@ -0,0 +1,114 @@
+package org.researchgraph.connector;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A class to print progress of a phase of the run periodically
+ *
+ * The reporter thread reads the processed count and the total from suppliers, usually a counter
+ * incremented by the phase anyway, so the phase itself does no extra work. Every report shows
+ * processed of total items, the rate since the last report, the average rate and the time left
+ * at the average rate. A total of 0 means the total is unknown and no ETA is printed.
+ *
+ * The phase prints its own summary at the end, the reporter only prints while the phase runs.
+ */
+
+public class ProgressReporter implements AutoCloseable {
+	public static final long DEFAULT_INTERVAL = 10000;
+
+	private final String phase;
+	private final String unit;
+	private final LongSupplier processed;
+	private final LongSupplier total;
+	private final PrintStream out;
+	private final long initial;
+	private final long started;
+	private final ScheduledExecutorService executor;
+
+	private long lastProcessed;
+	private long lastTime;
+
+	/**
+	 * @param phase name of the phase, what starts every line
+	 * @param unit name of processed items
+	 * @param processed supplier of the processed count, the count at the start is subtracted
+	 * @param total supplier of the total or 0 if it is not known
+	 * @param interval time between reports in milliseconds, 0 disables the reports
+	 */
+	public ProgressReporter(String phase, String unit, LongSupplier processed, LongSupplier total,
+			long interval, PrintStream out) {
+		this.phase = phase;
+		this.unit = unit;
+		this.processed = processed;
+		this.total = total;
+		this.out = out;
+		this.initial = processed.getAsLong();
+		this.started = this.lastTime = System.nanoTime();
+
+		if (interval > 0) {
+			executor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "progress-" + phase.toLowerCase());
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS);
+		} else
+			executor = null;
+	}
+
+	public ProgressReporter(String phase, String unit, LongSupplier processed, long total, long interval) {
+		this(phase, unit, processed, () -> total, interval, System.out);
+	}
+
+	public long getProcessed() {
+		return processed.getAsLong() - initial;
+	}
+
+	/**
+	 * Function to print the current progress
+	 */
+	public synchronized void report() {
+		long now = System.nanoTime();
+		long count = getProcessed();
+		long expected = total.getAsLong();
+
+		double rate = rate(count - lastProcessed, now - lastTime);
+		double average = rate(count, now - started);
+
+		StringBuilder line = new StringBuilder(phase).append(": ").append(count);
+		if (expected > 0)
+			line.append(" of ").append(expected).append(' ').append(unit)
+				.append(String.format(" (%.1f%%)", Math.min(100.0, count * 100.0 / expected)));
+		else
+			line.append(' ').append(unit);
+		line.append(String.format(", %.0f/sec now, %.0f/sec average", rate, average));
+		if (expected > 0 && average > 0)
+			line.append(", ETA ").append(formatTime((long) (Math.max(0, expected - count) / average)));
+
+		out.println(line);
+
+		lastProcessed = count;
+		lastTime = now;
+	}
+
+	/**
+	 * Function to stop the reports
+	 */
+	@Override
+	public void close() {
+		if (null != executor)
+			executor.shutdownNow();
+	}
+
+	private static double rate(long count, long nanos) {
+		return nanos <= 0 ? 0 : count * 1e9 / nanos;
+	}
+
+	static String formatTime(long seconds) {
+		return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+	}
+}
@@ -0,0 +1,304 @@
+package org.researchgraph.connector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact multimap from DOI to Neo4j node ids of the nodes referencing it
+ *
+ * Every DOI is stored once, as UTF-8 bytes in an arena of byte pages. The DOIs are
+ * indexed by an open addressing hash table of entry numbers. The node ids of every
+ * entry are stored as a chain in primitive arrays shared by all entries, so the table
+ * does not allocate any object per DOI or per reference.
+ *
+ * Entries are numbered from 0 in insertion order and can be accessed by that number.
+ * The class is not thread safe.
+ */
+
+public class ReferenceTable {
+	private static final int PAGE_BITS = 20;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int NONE = -1;
+
+	private byte[][] pages = new byte[16][];
+	private int pageCount = 0;
+	private int pagePosition = PAGE_SIZE;
+
+	// entries
+	private long[] entryOffsets = new long[INITIAL_CAPACITY];
+	private int[] entryLengths = new int[INITIAL_CAPACITY];
+	private int[] entryHashes = new int[INITIAL_CAPACITY];
+	private int[] entryHeads = new int[INITIAL_CAPACITY];
+	private int[] entryCounts = new int[INITIAL_CAPACITY];
+	private int entryCount = 0;
+
+	// references
+	private long[] referenceIds = new long[INITIAL_CAPACITY];
+	private int[] referenceNext = new int[INITIAL_CAPACITY];
+	private int referenceCount = 0;
+
+	// hash table, slot contains entry number + 1, 0 means empty
+	private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+	/**
+	 * Function to add a reference from node to DOI
+	 * @param doi String containing DOI
+	 * @param nodeId Neo4j node id
+	 * @return true if the reference has been added, false if the node was the last one added for this DOI
+	 */
+	public boolean add(String doi, long nodeId) {
+		int hash = hash(doi);
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		int entry;
+
+		while (0 != slots[slot]) {
+			entry = slots[slot] - 1;
+			if (entryHashes[entry] == hash && isEqual(entry, doi)) {
+				// a node referencing the same DOI twice will be added twice in a row
+				if (referenceIds[entryHeads[entry]] == nodeId)
+					return false;
+
+				addReference(entry, nodeId);
+				return true;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		entry = addEntry(doi, hash);
+		slots[slot] = entry + 1;
+		addReference(entry, nodeId);
+
+		if (entryCount * 2 > slots.length)
+			rehash(slots.length * 2);
+
+		return true;
+	}
+
+	/**
+	 * Function to find an entry number of a DOI
+	 * @param doi String containing DOI
+	 * @return entry number or -1 if the DOI does not exists
+	 */
+	public int find(String doi) {
+		int hash = hash(doi);
+		int mask = slots.length - 1;
+		for (int slot = hash & mask; 0 != slots[slot]; slot = (slot + 1) & mask) {
+			int entry = slots[slot] - 1;
+			if (entryHashes[entry] == hash && isEqual(entry, doi))
+				return entry;
+		}
+
+		return NONE;
+	}
+
+	public int size() {
+		return entryCount;
+	}
+
+	public boolean isEmpty() {
+		return 0 == entryCount;
+	}
+
+	public long getReferencesCount() {
+		return referenceCount;
+	}
+
+	public String getDoi(int entry) {
+		long offset = entryOffsets[entry];
+		return new String(pages[(int) (offset >>> PAGE_BITS)], (int) (offset & PAGE_MASK), entryLengths[entry], StandardCharsets.UTF_8);
+	}
+
+	public int getNodeIdsCount(int entry) {
+		return entryCounts[entry];
+	}
+
+	/**
+	 * Function to get node ids referencing a DOI
+	 * @param entry entry number
+	 * @return array of node ids, the last added node will be the first
+	 */
+	public long[] getNodeIds(int entry) {
+		long[] ids = new long[entryCounts[entry]];
+		int i = 0;
+		for (int reference = entryHeads[entry]; NONE != reference; reference = referenceNext[reference])
+			ids[i++] = referenceIds[reference];
+
+		return ids;
+	}
+
+	/**
+	 * Function to sort entries by DOI, comparing UTF-8 bytes, what gives the same order
+	 * for the same set of DOIs regardless of the order they were added in
+	 * @return array of entry numbers
+	 */
+	public int[] getSortedEntries() {
+		int[] entries = new int[entryCount];
+		for (int entry = 0; entry < entryCount; ++entry)
+			entries[entry] = entry;
+
+		int[] buffer = new int[entryCount];
+		for (int width = 1; width < entryCount; width *= 2) {
+			for (int left = 0; left < entryCount; left += 2 * width) {
+				int middle = Math.min(left + width, entryCount);
+				int right = Math.min(left + 2 * width, entryCount);
+
+				int i = left, j = middle, k = left;
+				while (i < middle && j < right)
+					buffer[k++] = compare(entries[j], entries[i]) < 0 ? entries[j++] : entries[i++];
+				while (i < middle)
+					buffer[k++] = entries[i++];
+				while (j < right)
+					buffer[k++] = entries[j++];
+			}
+
+			int[] swap = entries;
+			entries = buffer;
+			buffer = swap;
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Function to compare DOI of an entry with other DOI, comparing UTF-8 bytes
+	 * @return negative number, zero or positive number if the entry DOI is less, equal or greater than the DOI
+	 */
+	public int compareDoi(int entry, String doi) {
+		byte[] bytes = doi.getBytes(StandardCharsets.UTF_8);
+		long offset = entryOffsets[entry];
+		return compare(pages[(int) (offset >>> PAGE_BITS)], (int) (offset & PAGE_MASK), entryLengths[entry], bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Function to estimate memory used by the table
+	 * @return number of bytes allocated by the table arrays
+	 */
+	public long getMemoryUsage() {
+		return (long) pageCount * PAGE_SIZE
+				+ entryOffsets.length * 8L + entryLengths.length * 4L + entryHashes.length * 4L
+				+ entryHeads.length * 4L + entryCounts.length * 4L
+				+ referenceIds.length * 8L + referenceNext.length * 4L
+				+ slots.length * 4L;
+	}
+
+	private int addEntry(String doi, int hash) {
+		byte[] bytes = doi.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > PAGE_SIZE)
+			throw new IllegalArgumentException("DOI is too long: " + bytes.length + " bytes");
+
+		if (pagePosition + bytes.length > PAGE_SIZE) {
+			if (pageCount == pages.length)
+				pages = Arrays.copyOf(pages, pages.length * 2);
+			pages[pageCount++] = new byte[PAGE_SIZE];
+			pagePosition = 0;
+		}
+
+		System.arraycopy(bytes, 0, pages[pageCount - 1], pagePosition, bytes.length);
+
+		if (entryCount == entryOffsets.length) {
+			int capacity = entryCount * 2;
+			entryOffsets = Arrays.copyOf(entryOffsets, capacity);
+			entryLengths = Arrays.copyOf(entryLengths, capacity);
+			entryHashes = Arrays.copyOf(entryHashes, capacity);
+			entryHeads = Arrays.copyOf(entryHeads, capacity);
+			entryCounts = Arrays.copyOf(entryCounts, capacity);
+		}
+
+		int entry = entryCount++;
+		entryOffsets[entry] = ((long) (pageCount - 1) << PAGE_BITS) | pagePosition;
+		entryLengths[entry] = bytes.length;
+		entryHashes[entry] = hash;
+		entryHeads[entry] = NONE;
+		entryCounts[entry] = 0;
+
+		pagePosition += bytes.length;
+
+		return entry;
+	}
+
+	private void addReference(int entry, long nodeId) {
+		if (referenceCount == referenceIds.length) {
+			int capacity = referenceCount * 2;
+			referenceIds = Arrays.copyOf(referenceIds, capacity);
+			referenceNext = Arrays.copyOf(referenceNext, capacity);
+		}
+
+		int reference = referenceCount++;
+		referenceIds[reference] = nodeId;
+		referenceNext[reference] = entryHeads[entry];
+		entryHeads[entry] = reference;
+		++entryCounts[entry];
+	}
+
+	private void rehash(int capacity) {
+		int[] table = new int[capacity];
+		int mask = capacity - 1;
+		for (int entry = 0; entry < entryCount; ++entry) {
+			int slot = entryHashes[entry] & mask;
+			while (0 != table[slot])
+				slot = (slot + 1) & mask;
+			table[slot] = entry + 1;
+		}
+
+		slots = table;
+	}
+
+	private boolean isEqual(int entry, String doi) {
+		long offset = entryOffsets[entry];
+		byte[] page = pages[(int) (offset >>> PAGE_BITS)];
+		int position = (int) (offset & PAGE_MASK);
+		int length = entryLengths[entry];
+		int size = doi.length();
+
+		// fast path for ASCII, what is almost every DOI
+		if (size == length) {
+			int i = 0;
+			while (i < size) {
+				char c = doi.charAt(i);
+				if (c >= 0x80)
+					break;
+				if (page[position + i] != c)
+					return false;
+				++i;
+			}
+			if (i == size)
+				return true;
+		}
+
+		byte[] bytes = doi.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length != length)
+			return false;
+		for (int i = 0; i < length; ++i)
+			if (page[position + i] != bytes[i])
+				return false;
+
+		return true;
+	}
+
+	private int compare(int entryA, int entryB) {
+		long offsetA = entryOffsets[entryA];
+		long offsetB = entryOffsets[entryB];
+		return compare(pages[(int) (offsetA >>> PAGE_BITS)], (int) (offsetA & PAGE_MASK), entryLengths[entryA],
+				pages[(int) (offsetB >>> PAGE_BITS)], (int) (offsetB & PAGE_MASK), entryLengths[entryB]);
+	}
+
+	private static int compare(byte[] a, int positionA, int lengthA, byte[] b, int positionB, int lengthB) {
+		int length = Math.min(lengthA, lengthB);
+		for (int i = 0; i < length; ++i) {
+			int diff = (a[positionA + i] & 0xff) - (b[positionB + i] & 0xff);
+			if (0 != diff)
+				return diff;
+		}
+
+		return lengthA - lengthB;
+	}
+
+	private static int hash(String doi) {
+		int h = doi.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,323 @@
+package org.researchgraph.connector;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Bloom filter of resolved DOIs, what is stored in a local file between runs
+ *
+ * The filter holds the DOI fingerprints (see {@link DoiFingerprint}) of all resolved works, so a DOI
+ * what is not in the filter is definitely not resolved and does not need to be looked up in MySQL.
+ * Bit positions are derived from the fingerprint by double hashing.
+ *
+ * The filter is built by a streaming scan of the doi_resolution fingerprints and updated
+ * by works resolved since the last update. It is rebuilt if the file does not exists, was built
+ * for a different false positive rate or holds more DOIs than it was sized for.
+ *
+ * Lookups are thread safe, updates must not run concurrently with lookups.
+ */
+
+public class ResolvedFilter {
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+	private static final String SELECT_RESOLVED_COUNT = "SELECT COUNT(*) FROM doi_resolution WHERE resolved IS NOT NULL";
+	private static final String SELECT_RESOLVED = "SELECT doi_hash FROM doi_resolution WHERE resolved IS NOT NULL";
+	private static final String SELECT_RESOLVED_SINCE = "SELECT doi_hash FROM doi_resolution WHERE resolved>=?";
+
+	private static final long MAGIC = 0x5245534f4c564544L; // RESOLVED
+	private static final int VERSION = 1;
+	// magic, version, hashes, bits, capacity, inserted, false positive rate, last resolution time
+	private static final int HEADER_SIZE = 8 + 4 + 4 + 8 + 8 + 8 + 8 + 8;
+	private static final int IO_BUFFER_SIZE = 1024 * 1024;
+	private static final long NO_TIME = Long.MIN_VALUE;
+	// room for works resolved after the filter has been built
+	private static final double GROWTH = 1.25;
+	private static final long MIN_CAPACITY = 1024;
+
+	private final Path path;
+	private final double falsePositiveRate;
+
+	private long[] bits;
+	private long bitCount;
+	private int hashes;
+	private long capacity;
+	private long inserted;
+	private long lastResolved = NO_TIME;
+
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+	private final AtomicLong falsePositives = new AtomicLong();
+
+	public ResolvedFilter(Path path, double falsePositiveRate) {
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+			throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+
+		this.path = path;
+		this.falsePositiveRate = falsePositiveRate;
+	}
+
+	public ResolvedFilter(String path, double falsePositiveRate) {
+		this(Paths.get(path), falsePositiveRate);
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public double getFalsePositiveRate() {
+		return falsePositiveRate;
+	}
+
+	public long getInserted() {
+		return inserted;
+	}
+
+	public long getLookups() {
+		return lookups.get();
+	}
+
+	/**
+	 * @return number of DOIs, what has not been looked up in MySQL
+	 */
+	public long getSkipped() {
+		return skipped.get();
+	}
+
+	public long getFalsePositives() {
+		return falsePositives.get();
+	}
+
+	/**
+	 * Function to load the filter and add works resolved since the last update,
+	 * or to build the filter if it can not be used. The filter is saved afterwards.
+	 * @return true if the filter has been rebuilt
+	 */
+	public boolean update(Connection conn) throws SQLException, IOException {
+		boolean rebuild = !load();
+		Timestamp last = WorkResolver.getLastResolved(conn);
+
+		if (!rebuild && NO_TIME != lastResolved) {
+			try (PreparedStatement select = conn.prepareStatement(SELECT_RESOLVED_SINCE, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+				select.setFetchSize(Integer.MIN_VALUE);
+				select.setTimestamp(1, new Timestamp(lastResolved));
+				try (ResultSet rs = select.executeQuery()) {
+					addAll(rs);
+				}
+			}
+
+			// works resolved again are counted twice, what only makes the rebuild earlier
+			rebuild = inserted > capacity;
+		}
+
+		if (rebuild) {
+			create(countResolved(conn));
+			try (Statement select = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+				select.setFetchSize(Integer.MIN_VALUE);
+				try (ResultSet rs = select.executeQuery(SELECT_RESOLVED)) {
+					addAll(rs);
+				}
+			}
+		}
+
+		// works resolved during the scan will be added again by the next update
+		if (null != last)
+			lastResolved = last.getTime();
+		save();
+
+		return rebuild;
+	}
+
+	/**
+	 * Function to add fingerprints from a streaming result, what is read row by row
+	 */
+	private void addAll(ResultSet rs) throws SQLException {
+		while (rs.next())
+			add(rs.getLong(1));
+	}
+
+	/**
+	 * Function to test if a DOI can be resolved
+	 * @return false if the DOI is definitely not resolved
+	 */
+	public boolean mightBeResolved(String doi) {
+		lookups.incrementAndGet();
+		if (contains(DoiFingerprint.of(doi)))
+			return true;
+
+		skipped.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Function to record a DOI, what has passed the filter, but has not been resolved
+	 */
+	public void addFalsePositive() {
+		falsePositives.incrementAndGet();
+	}
+
+	public void printStatistics(PrintStream out) {
+		long passed = lookups.get() - skipped.get();
+		out.println( String.format("%d resolved filter lookups.\n%d MySQL lookups has been saved.\n"
+				+ "%d false positives (%.2f%% of passed DOIs).\n%d DOIs in the resolved filter, %d KB.",
+				lookups.get(), skipped.get(), falsePositives.get(), 0 == passed ? 0.0 : falsePositives.get() * 100.0 / passed,
+				inserted, null == bits ? 0 : bits.length / 128) );
+	}
+
+	/**
+	 * Function to create an empty filter for the expected number of DOIs
+	 */
+	void create(long expected) {
+		capacity = Math.max(MIN_CAPACITY, (long) (expected * GROWTH));
+
+		double bitsPerDoi = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		long words = ((long) Math.ceil(capacity * bitsPerDoi) + Long.SIZE - 1) / Long.SIZE;
+		if (words > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("The resolved filter is too large: " + capacity + " DOIs");
+
+		bits = new long[(int) words];
+		bitCount = words * Long.SIZE;
+		hashes = (int) Math.max(1, Math.min(30, Math.round(bitsPerDoi * Math.log(2))));
+		inserted = 0;
+		lastResolved = NO_TIME;
+	}
+
+	void add(long fingerprint) {
+		long h1 = fingerprint;
+		long h2 = mix(fingerprint) | 1;
+		for (int i = 0; i < hashes; ++i) {
+			long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+
+		++inserted;
+	}
+
+	boolean contains(long fingerprint) {
+		long h1 = fingerprint;
+		long h2 = mix(fingerprint) | 1;
+		for (int i = 0; i < hashes; ++i) {
+			long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+			if (0 == (bits[(int) (bit >>> 6)] & (1L << bit)))
+				return false;
+		}
+
+		return true;
+	}
+
+	private static long countResolved(Connection conn) throws SQLException {
+		try (Statement statement = conn.createStatement();
+			 ResultSet rs = statement.executeQuery(SELECT_RESOLVED_COUNT)) {
+			return rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Function to load the filter from the file
+	 * @return false if there is no usable filter
+	 */
+	boolean load() throws IOException {
+		if (!Files.isRegularFile(path))
+			return false;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			if (channel.read(header, 0) < HEADER_SIZE || MAGIC != header.getLong(0) || VERSION != header.getInt(8)
+					|| falsePositiveRate != header.getDouble(8 + 4 + 4 + 8 + 8 + 8))
+				return false;
+
+			long words = header.getLong(8 + 4 + 4) / Long.SIZE;
+			long fileCapacity = header.getLong(8 + 4 + 4 + 8);
+			long fileInserted = header.getLong(8 + 4 + 4 + 8 + 8);
+			if (fileInserted > fileCapacity || channel.size() != HEADER_SIZE + words * 8)
+				return false;
+
+			long[] fileBits = new long[(int) words];
+			ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+			long position = HEADER_SIZE;
+			int word = 0;
+			while (word < fileBits.length) {
+				buffer.clear();
+				buffer.limit((int) Math.min(IO_BUFFER_SIZE, (fileBits.length - word) * 8L));
+				while (buffer.hasRemaining())
+					if (channel.read(buffer, position + buffer.position()) < 0)
+						return false;
+
+				buffer.flip();
+				position += buffer.limit();
+				while (buffer.hasRemaining())
+					fileBits[word++] = buffer.getLong();
+			}
+
+			bits = fileBits;
+			bitCount = words * Long.SIZE;
+			hashes = header.getInt(8 + 4);
+			capacity = fileCapacity;
+			inserted = fileInserted;
+			lastResolved = header.getLong(8 + 4 + 4 + 8 + 8 + 8 + 8);
+
+			return true;
+		}
+	}
+
+	/**
+	 * Function to write the filter into a temporary file and replace the filter file atomically
+	 */
+	void save() throws IOException {
+		if (null != path.toAbsolutePath().getParent())
+			Files.createDirectories(path.toAbsolutePath().getParent());
+
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+			buffer.putLong(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(hashes);
+			buffer.putLong(bitCount);
+			buffer.putLong(capacity);
+			buffer.putLong(inserted);
+			buffer.putDouble(falsePositiveRate);
+			buffer.putLong(lastResolved);
+
+			for (long word : bits) {
+				if (!buffer.hasRemaining()) {
+					buffer.flip();
+					while (buffer.hasRemaining())
+						channel.write(buffer);
+					buffer.clear();
+				}
+				buffer.putLong(word);
+			}
+
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(true);
+		}
+
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,54 @@
+package org.researchgraph.connector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A class to persist the resolution time of the last imported work
+ *
+ * The time is stored as a single line of text. The file is replaced atomically,
+ * so an interrupted run will leave the previous watermark.
+ */
+
+public class Watermark {
+	private final Path path;
+
+	public Watermark(Path path) {
+		this.path = path;
+	}
+
+	public Watermark(String path) {
+		this(Paths.get(path));
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Function to load the watermark
+	 * @return time or null if the watermark does not exists
+	 * @throws IOException
+	 */
+	public Timestamp load() throws IOException {
+		if (!Files.exists(path))
+			return null;
+
+		String line = StringUtils.trimToNull(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+		return null == line ? null : Timestamp.valueOf(line);
+	}
+
+	public void save(Timestamp resolved) throws IOException {
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		Files.write(temp, Collections.singletonList(resolved.toString()), StandardCharsets.UTF_8);
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
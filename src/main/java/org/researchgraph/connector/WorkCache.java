@@ -0,0 +1,537 @@
+package org.researchgraph.connector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A local cache of resolved works, what survives between runs
+ *
+ * Works are stored in an append only file, mapped into memory in segments of fixed size.
+ * Every record contains the DOI fingerprint (see {@link DoiFingerprint}) and the encoded work
+ * with its authors. The index from fingerprint to the offset of the last record is kept in memory
+ * and rebuilt from the file when the cache is opened. The full DOI is compared after a lookup.
+ * A record is written before its state, so a record left incomplete by a crash marks the end of the file.
+ *
+ * Only resolved works are cached. Works resolved again since the last refresh are replaced
+ * by refresh(), replaced records are marked, but never reused.
+ *
+ * The cache folder can be used by a single process at a time. The class is thread safe.
+ */
+
+public class WorkCache implements AutoCloseable {
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final String FILE_WORKS = "works.dat";
+	private static final String FILE_REFRESHED = "refreshed.txt";
+	private static final long MAGIC = 0x574f524b43414348L; // WORKCACH
+	private static final int VERSION = 1;
+
+	private static final long NONE = -1;
+
+	// file header: magic, version, segment size
+	private static final int FILE_HEADER_SIZE = 8 + 4 + 4;
+	// record: state, fingerprint, payload length, payload
+	private static final int HEADER_SIZE = 1 + 8 + 4;
+	private static final byte STATE_END = 0;
+	private static final byte STATE_REPLACED = 1;
+	private static final byte STATE_STORED = 2;
+
+	private final File folder;
+	private final Watermark refreshed;
+	private final int segmentSize;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+	private final FileLock lock;
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private final HashIndex index = new HashIndex();
+	private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+	private int position;
+	private long hits = 0;
+	private long misses = 0;
+	private long stored = 0;
+	private long replaced = 0;
+
+	/**
+	 * @param folder cache folder, what will be created if it does not exists
+	 * @param segmentSize size of a single mapped segment of a new cache file, what limits the size of one record.
+	 * An existing file keeps its segment size.
+	 */
+	public WorkCache(File folder, int segmentSize) throws IOException {
+		if (segmentSize <= FILE_HEADER_SIZE + HEADER_SIZE)
+			throw new IllegalArgumentException("Segment size is too small");
+
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IOException("Unable to create the work cache folder: " + folder);
+
+		this.folder = folder;
+		this.refreshed = new Watermark(new File(folder, FILE_REFRESHED).toPath());
+		this.randomAccessFile = new RandomAccessFile(new File(folder, FILE_WORKS), "rw");
+		this.channel = randomAccessFile.getChannel();
+
+		try {
+			this.lock = channel.tryLock();
+			if (null == lock)
+				throw new IllegalStateException("The work cache " + folder + " is used by another process");
+
+			this.segmentSize = 0 == channel.size() ? segmentSize : readSegmentSize();
+			open();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	public WorkCache(File folder) throws IOException {
+		this(folder, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public WorkCache(String folder) throws IOException {
+		this(new File(folder));
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * @return number of cached works
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * @return size of the cache file in bytes
+	 */
+	public synchronized long getFileSize() {
+		return (long) Math.max(0, segments.size() - 1) * segmentSize + position;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getReplaced() {
+		return replaced;
+	}
+
+	/**
+	 * Function to find a cached work
+	 * @return work or null if the work is not cached
+	 */
+	public synchronized Work get(String doi) {
+		long offset = index.get(DoiFingerprint.of(doi));
+		if (NONE != offset) {
+			Work work = decode(readPayload(offset));
+			if (DoiFingerprint.normalize(work.getDoi()).equals(DoiFingerprint.normalize(doi))) {
+				++hits;
+				return work;
+			}
+		}
+
+		++misses;
+		return null;
+	}
+
+	/**
+	 * Function to add a resolved work to the cache. The previous work with the same fingerprint
+	 * will be replaced. Works what are not resolved or too large for a segment are ignored.
+	 */
+	public synchronized void put(Work work) {
+		if (work.isResolved() && write(work))
+			++stored;
+	}
+
+	/**
+	 * Function to replace a work, if the cache contains it
+	 * @return true if the work has been replaced
+	 */
+	public synchronized boolean replace(Work work) {
+		long offset = index.get(DoiFingerprint.of(work.getDoi()));
+		if (NONE == offset || !work.isResolved() || !DoiFingerprint.normalize(work.getDoi()).equals(
+				DoiFingerprint.normalize(decode(readPayload(offset)).getDoi())))
+			return false;
+
+		if (write(work))
+			++replaced;
+
+		return true;
+	}
+
+	/**
+	 * Function to replace cached works, what has been resolved again since the last refresh.
+	 * The time of the last resolution is stored as the time of this refresh.
+	 * @return number of replaced works
+	 */
+	public long refresh(Connection conn, int batchSize) throws Exception {
+		Timestamp last = WorkResolver.getLastResolved(conn);
+		Timestamp since = refreshed.load();
+		long before = getReplaced();
+
+		if (null != since && size() > 0)
+			try (WorkResolver resolver = new WorkResolver(conn, batchSize)) {
+				resolver.loadResolvedWorks(since, (works, resolved) -> {
+					for (Work work : works)
+						replace(work);
+				});
+			}
+
+		if (null != last)
+			refreshed.save(last);
+
+		return getReplaced() - before;
+	}
+
+	public synchronized void printStatistics(PrintStream out) {
+		long requests = hits + misses;
+		out.println( String.format("%d work cache hits.\n%d work cache misses.\n%d%% work cache hit ratio.\n"
+				+ "%d works has been cached.\n%d cached works has been replaced.\n%d works in the cache, %d KB.",
+				hits, misses, 0 == requests ? 0 : hits * 100 / requests, stored, replaced, index.size(), getFileSize() / 1024) );
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			for (MappedByteBuffer segment : segments)
+				segment.force();
+		} finally {
+			segments.clear();
+			index.clear();
+
+			lock.release();
+			channel.close();
+			randomAccessFile.close();
+		}
+	}
+
+	private int readSegmentSize() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		if (channel.read(header, 0) < FILE_HEADER_SIZE || MAGIC != header.getLong(0))
+			throw new IllegalStateException("The file " + new File(folder, FILE_WORKS) + " is not a work cache");
+		if (VERSION != header.getInt(8))
+			throw new IllegalStateException("The work cache " + folder + " has unsupported version " + header.getInt(8)
+				+ ", please delete the folder");
+
+		return header.getInt(8 + 4);
+	}
+
+	/**
+	 * Function to map all segments of the file and index the stored records
+	 */
+	private void open() throws IOException {
+		long length = channel.size();
+		if (0 == length) {
+			addSegment();
+			return;
+		}
+
+		for (long offset = 0; offset < length; offset += segmentSize) {
+			MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, offset, segmentSize);
+			segments.add(segment);
+
+			int recordPosition = 0 == offset ? FILE_HEADER_SIZE : 0;
+			while (recordPosition + HEADER_SIZE <= segmentSize) {
+				byte state = segment.get(recordPosition);
+				if (STATE_END == state)
+					break;
+
+				if (STATE_STORED == state) {
+					long previous = index.put(segment.getLong(recordPosition + 1), offset + recordPosition);
+					// a different DOI with the same fingerprint
+					if (NONE != previous)
+						segments.get((int) (previous / segmentSize)).put((int) (previous % segmentSize), STATE_REPLACED);
+				}
+
+				recordPosition += HEADER_SIZE + segment.getInt(recordPosition + 1 + 8);
+			}
+
+			position = recordPosition;
+		}
+	}
+
+	/**
+	 * Function to append a record
+	 * @return false if the work is too large for a segment
+	 */
+	private boolean write(Work work) {
+		byte[] bytes = encode(work);
+		int size = HEADER_SIZE + bytes.length;
+		if (size > segmentSize - FILE_HEADER_SIZE)
+			return false;
+
+		try {
+			if (position + size > segmentSize)
+				addSegment();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to extend the work cache", e);
+		}
+
+		int segmentIndex = segments.size() - 1;
+		MappedByteBuffer segment = segments.get(segmentIndex);
+		long fingerprint = DoiFingerprint.of(work.getDoi());
+
+		segment.putLong(position + 1, fingerprint);
+		segment.putInt(position + 1 + 8, bytes.length);
+		ByteBuffer buffer = segment.duplicate();
+		buffer.position(position + HEADER_SIZE);
+		buffer.put(bytes);
+		segment.put(position, STATE_STORED);
+
+		long previous = index.put(fingerprint, (long) segmentIndex * segmentSize + position);
+		if (NONE != previous)
+			segments.get((int) (previous / segmentSize)).put((int) (previous % segmentSize), STATE_REPLACED);
+		position += size;
+
+		return true;
+	}
+
+	private void addSegment() throws IOException {
+		// mapping beyond the end of the file will extend it with zeros, what marks the end of records
+		MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize);
+		position = 0;
+
+		if (segments.isEmpty()) {
+			segment.putLong(0, MAGIC);
+			segment.putInt(8, VERSION);
+			segment.putInt(8 + 4, segmentSize);
+			position = FILE_HEADER_SIZE;
+		}
+
+		segments.add(segment);
+	}
+
+	private byte[] readPayload(long offset) {
+		MappedByteBuffer segment = segments.get((int) (offset / segmentSize));
+		int recordPosition = (int) (offset % segmentSize);
+
+		byte[] bytes = new byte[segment.getInt(recordPosition + 1 + 8)];
+		ByteBuffer buffer = segment.duplicate();
+		buffer.position(recordPosition + HEADER_SIZE);
+		buffer.get(bytes);
+
+		return bytes;
+	}
+
+	private byte[] encode(Work work) {
+		payload.reset();
+
+		try (DataOutputStream out = new DataOutputStream(payload)) {
+			out.writeLong(work.getResolutionId());
+			writeDate(out, work.getCreated());
+			writeDate(out, work.getResolved());
+			writeString(out, work.getDoi());
+			writeString(out, work.getSource());
+			writeString(out, work.getSourceUrl());
+			writeString(out, work.getUrl());
+			writeString(out, work.getTitle());
+			writeVarInt(out, null == work.getYear() ? 0 : work.getYear() + 1);
+
+			writeVarInt(out, work.getAuthors().size());
+			for (Author author : work.getAuthors()) {
+				writeString(out, author.getFirstName());
+				writeString(out, author.getLastName());
+				writeString(out, author.getFullName());
+				writeString(out, author.getOrcid());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return payload.toByteArray();
+	}
+
+	private static Work decode(byte[] bytes) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			Work work = new Work();
+
+			work.setResolutionId(in.readLong());
+			work.setCreated(readDate(in));
+			work.setResolved(readDate(in));
+			work.setDoi(readString(in));
+			work.setSource(readString(in));
+			work.setSourceUrl(readString(in));
+			work.setUrl(readString(in));
+			work.setTitle(readString(in));
+			int year = readVarInt(in);
+			work.setYear(0 == year ? null : year - 1);
+
+			for (int count = readVarInt(in); count > 0; --count) {
+				Author author = new Author();
+
+				author.setFirstName(readString(in));
+				author.setLastName(readString(in));
+				author.setFullName(readString(in));
+				author.setOrcid(readString(in));
+
+				work.addAuthor(author);
+			}
+
+			return work;
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read cached work", e);
+		}
+	}
+
+	private static void writeDate(DataOutputStream out, Date date) throws IOException {
+		out.writeLong(null == date ? Long.MIN_VALUE : date.getTime());
+	}
+
+	private static Date readDate(DataInputStream in) throws IOException {
+		long time = in.readLong();
+		return Long.MIN_VALUE == time ? null : new Date(time);
+	}
+
+	/**
+	 * Function to write a string as the length plus one and UTF-8 bytes, zero length marks null
+	 */
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (null == string)
+			writeVarInt(out, 0);
+		else {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (0 == length)
+			return null;
+
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+
+		throw new IOException("Malformed variable length integer");
+	}
+
+	/**
+	 * An open addressing hash table from DOI fingerprint to offset of the last record
+	 */
+	private static class HashIndex {
+		// fingerprints are never negative
+		private static final long EMPTY = -1;
+		private static final int INITIAL_CAPACITY = 1024;
+
+		private long[] fingerprints;
+		private long[] offsets;
+		private int size;
+
+		HashIndex() {
+			clear();
+		}
+
+		int size() {
+			return size;
+		}
+
+		long get(long fingerprint) {
+			int mask = fingerprints.length - 1;
+			for (int slot = slot(fingerprint, mask); EMPTY != fingerprints[slot]; slot = (slot + 1) & mask)
+				if (fingerprints[slot] == fingerprint)
+					return offsets[slot];
+
+			return NONE;
+		}
+
+		/**
+		 * @return the previous offset or NONE
+		 */
+		long put(long fingerprint, long offset) {
+			int mask = fingerprints.length - 1;
+			int slot = slot(fingerprint, mask);
+			while (EMPTY != fingerprints[slot]) {
+				if (fingerprints[slot] == fingerprint) {
+					long previous = offsets[slot];
+					offsets[slot] = offset;
+					return previous;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+
+			fingerprints[slot] = fingerprint;
+			offsets[slot] = offset;
+
+			if (++size * 2 > fingerprints.length)
+				rehash(fingerprints.length * 2);
+
+			return NONE;
+		}
+
+		void clear() {
+			fingerprints = new long[INITIAL_CAPACITY];
+			offsets = new long[INITIAL_CAPACITY];
+			Arrays.fill(fingerprints, EMPTY);
+			size = 0;
+		}
+
+		private static int slot(long fingerprint, int mask) {
+			// the low bits of MD5 are uniform
+			return (int) fingerprint & mask;
+		}
+
+		private void rehash(int capacity) {
+			long[] oldFingerprints = fingerprints;
+			long[] oldOffsets = offsets;
+
+			fingerprints = new long[capacity];
+			offsets = new long[capacity];
+			Arrays.fill(fingerprints, EMPTY);
+
+			int mask = capacity - 1;
+			for (int i = 0; i < oldFingerprints.length; ++i)
+				if (EMPTY != oldFingerprints[i]) {
+					int slot = slot(oldFingerprints[i], mask);
+					while (EMPTY != fingerprints[slot])
+						slot = (slot + 1) & mask;
+
+					fingerprints[slot] = oldFingerprints[i];
+					offsets[slot] = oldOffsets[i];
+				}
+		}
+	}
+}
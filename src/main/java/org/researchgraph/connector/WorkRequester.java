@@ -0,0 +1,268 @@
+package org.researchgraph.connector;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.researchgraph.metrics.Counter;
+import org.researchgraph.metrics.Histogram;
+import org.researchgraph.metrics.MetricRegistry;
+
+/**
+ * A class to request resolution of unknown DOIs
+ *
+ * Requests are deduplicated in memory for the whole run and passed to a writer thread,
+ * so the caller never waits for MySQL. The writer inserts requests as multi-row
+ * INSERT IGNORE statements, each batch in its own transaction. A batch is flushed
+ * when it reaches the batch size or when the flush interval has passed, or when the caller
+ * needs every queued request to be written before a checkpoint.
+ *
+ * The class owns the connection and will close it.
+ */
+
+public class WorkRequester implements AutoCloseable {
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+	public static final String METRIC_QUEUED = "requester.queued";
+	public static final String METRIC_FLUSHED = "requester.flushed";
+	public static final String METRIC_DUPLICATES = "requester.duplicates";
+	public static final String METRIC_BACKLOG = "requester.backlog";
+	public static final String METRIC_FLUSH = "requester.flush";
+
+	private static final String INSERT_WORKS = "INSERT IGNORE INTO doi_resolution (doi, created) VALUES %s";
+	private static final String VALUES_WORK = "(?, NOW())";
+	private static final String END = new String();
+	private static final String FLUSH = new String();
+
+	private final Connection conn;
+	private final int batchSize;
+	private final long flushInterval;
+	private final Set<String> requested = ConcurrentHashMap.newKeySet();
+	private final BlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+	private volatile Counter queued = new Counter();
+	private volatile Counter flushed = new Counter();
+	private volatile Counter duplicates = new Counter();
+	private volatile Histogram flushTime = new Histogram();
+	private final Thread writer;
+	private volatile Exception error;
+	private volatile boolean closed;
+	private long flushesRequested;
+	private long flushesCompleted;
+
+	public WorkRequester(Connection conn, int batchSize, long flushInterval) throws SQLException {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size must be positive");
+		if (flushInterval <= 0)
+			throw new IllegalArgumentException("Flush interval must be positive");
+
+		this.conn = conn;
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+
+		conn.setAutoCommit(false);
+
+		writer = new Thread(this::write, "doi-requester");
+		writer.start();
+	}
+
+	public WorkRequester(Connection conn) throws SQLException {
+		this(conn, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	public long getQueued() {
+		return queued.getCount();
+	}
+
+	public long getFlushed() {
+		return flushed.getCount();
+	}
+
+	public long getDuplicates() {
+		return duplicates.getCount();
+	}
+
+	/**
+	 * Sets the registry, what the request counters, the backlog and the flush times will be reported to.
+	 * Counts collected before will not be reported.
+	 * @param metrics
+	 */
+	public void setMetrics(MetricRegistry metrics) {
+		queued = metrics.counter(METRIC_QUEUED);
+		flushed = metrics.counter(METRIC_FLUSHED);
+		duplicates = metrics.counter(METRIC_DUPLICATES);
+		flushTime = metrics.histogram(METRIC_FLUSH);
+		metrics.gauge(METRIC_BACKLOG, () -> queue.size());
+	}
+
+	/**
+	 * Function to request DOI resolution. The function does not block.
+	 * @param doi String containing DOI
+	 * @return true if the DOI has been queued, false if it was already requested during this run
+	 * @throws SQLException if the writer thread has failed
+	 */
+	public boolean requestWork(String doi) throws SQLException {
+		checkError();
+		if (closed)
+			throw new IllegalStateException("The requester is closed");
+
+		if (!requested.add(DoiFingerprint.normalize(doi))) {
+			duplicates.increment();
+			return false;
+		}
+
+		queued.increment();
+		queue.add(doi);
+
+		return true;
+	}
+
+	/**
+	 * Function to write all requests queued so far. The function waits for the writer thread.
+	 * @throws SQLException if the writer thread has failed
+	 */
+	public void flush() throws SQLException, InterruptedException {
+		checkError();
+		if (closed)
+			return;
+
+		synchronized (queue) {
+			long flush = ++flushesRequested;
+			queue.add(FLUSH);
+
+			while (flushesCompleted < flush && null == error && writer.isAlive())
+				queue.wait(flushInterval);
+		}
+
+		checkError();
+	}
+
+	public void printStatistics(PrintStream out) {
+		out.println( String.format("%d DOI requests has been queued.\n%d DOI requests has been flushed.\n%d DOI requests has been skipped as duplicates.",
+				queued.getCount(), flushed.getCount(), duplicates.getCount()) );
+	}
+
+	private void write() {
+		List<String> batch = new ArrayList<String>(batchSize);
+
+		try (PreparedStatement insertWorks = prepareInsert(batchSize)) {
+			long deadline = System.currentTimeMillis() + flushInterval;
+			boolean end = false;
+
+			while (!end) {
+				boolean requested = false;
+				String doi = queue.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				while (null != doi) {
+					if (END == doi) {
+						end = true;
+						break;
+					}
+					if (FLUSH == doi) {
+						requested = true;
+						break;
+					}
+
+					batch.add(doi);
+					if (batch.size() >= batchSize)
+						break;
+
+					doi = queue.poll();
+				}
+
+				if (end || requested || batch.size() >= batchSize || System.currentTimeMillis() >= deadline) {
+					if (!batch.isEmpty())
+						flush(insertWorks, batch);
+
+					batch.clear();
+					deadline = System.currentTimeMillis() + flushInterval;
+				}
+
+				if (requested)
+					synchronized (queue) {
+						++flushesCompleted;
+						queue.notifyAll();
+					}
+			}
+		} catch (Exception e) {
+			error = e;
+		} finally {
+			// wake up callers waiting for a flush what will never be written
+			synchronized (queue) {
+				queue.notifyAll();
+			}
+		}
+	}
+
+	private void flush(PreparedStatement insertWorks, List<String> batch) throws SQLException {
+		long started = System.nanoTime();
+		try {
+			int inserted;
+			if (batch.size() == batchSize) {
+				inserted = insert(insertWorks, batch);
+			} else {
+				try (PreparedStatement insert = prepareInsert(batch.size())) {
+					inserted = insert(insert, batch);
+				}
+			}
+
+			conn.commit();
+
+			flushed.add(inserted);
+			duplicates.add(batch.size() - inserted);
+			flushTime.time(started);
+		} catch (SQLException e) {
+			conn.rollback();
+
+			throw e;
+		}
+	}
+
+	private PreparedStatement prepareInsert(int size) throws SQLException {
+		return conn.prepareStatement(String.format(INSERT_WORKS, StringUtils.repeat(VALUES_WORK, ",", size)));
+	}
+
+	private static int insert(PreparedStatement insert, List<String> batch) throws SQLException {
+		for (int i = 0; i < batch.size(); ++i)
+			insert.setString(i + 1, batch.get(i));
+
+		return insert.executeUpdate();
+	}
+
+	private void checkError() throws SQLException {
+		if (null != error)
+			throw new SQLException("Unable to request DOI resolution", error);
+	}
+
+	/**
+	 * Function to flush all pending requests and stop the writer thread. 
+	 * Closing the requester again does nothing.
+	 * @throws SQLException if the writer thread has failed or the flush has been interrupted
+	 */
+	@Override
+	public void close() throws SQLException {
+		if (closed)
+			return;
+
+		closed = true;
+		queue.add(END);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new SQLException("Interrupted while flushing DOI requests", e);
+		} finally {
+			conn.close();
+		}
+
+		checkError();
+	}
+}
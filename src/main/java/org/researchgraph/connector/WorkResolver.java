@@ -0,0 +1,369 @@
+package org.researchgraph.connector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.researchgraph.metrics.Counter;
+import org.researchgraph.metrics.Histogram;
+import org.researchgraph.metrics.MetricRegistry;
+
+/**
+ * A class to resolve DOIs into Works using the doi_resolution and doi_author tables
+ *
+ * DOIs are resolved in blocks: one query loads all doi_resolution rows of the block
+ * and one query loads all doi_author rows of the resolved works. Both statements are
+ * prepared once for the full block size, shorter blocks are padded with the last value.
+ *
+ * The doi_resolution rows are looked up by the DOI fingerprint (see {@link DoiFingerprint})
+ * and the full DOI is compared afterwards.
+ *
+ * Resolved works are looked up in the work cache first, if there is one, and works loaded
+ * from MySQL are added to it. DOIs rejected by the resolved filter are not looked up at all.
+ *
+ * When most of the table is referenced, the DOIs can be resolved by one scan of the table instead
+ * (see {@link WorkScanner}).
+ *
+ * The class does not own the connection or the cache and will not close them.
+ */
+
+public class WorkResolver implements AutoCloseable {
+	public static final String METRIC_DOIS = "resolver.dois";
+	public static final String METRIC_LOOKUP = "resolver.lookup";
+
+	private static final String SELECT_WORK = "SELECT id, doi, source, source_url, url, title, year, created, resolved FROM doi_resolution WHERE doi_hash=?";
+	private static final String SELECT_WORKS = "SELECT id, doi, source, source_url, url, title, year, created, resolved FROM doi_resolution WHERE doi_hash IN (%s)";
+	private static final String SELECT_AUTHORS = "SELECT resolution_id, first_name, last_name, full_name, orcid FROM doi_author WHERE resolution_id=?";
+	private static final String SELECT_AUTHORS_IN = "SELECT resolution_id, first_name, last_name, full_name, orcid FROM doi_author WHERE resolution_id IN (%s)";
+	private static final String SELECT_RESOLVED_WORKS = "SELECT id, doi, source, source_url, url, title, year, created, resolved FROM doi_resolution WHERE resolved>? OR (resolved=? AND id>?) ORDER BY resolved, id LIMIT ?";
+	private static final String SELECT_LAST_RESOLVED = "SELECT MAX(resolved) FROM doi_resolution";
+
+	private final int batchSize;
+	private final PreparedStatement selectWork;
+	private final PreparedStatement selectWorks;
+	private final PreparedStatement selectAuthors;
+	private final PreparedStatement selectAuthorsIn;
+	private final Connection conn;
+	private final WorkCache cache;
+	private final ResolvedFilter filter;
+	private Counter dois = new Counter();
+	private Histogram lookupTime = new Histogram();
+
+	public interface ResolvedWorksConsumer {
+		/**
+		 * @param works block of resolved works with authors
+		 * @param resolved resolution time of the last work in the block
+		 */
+		void accept(List<Work> works, Timestamp resolved) throws Exception;
+	}
+
+	public WorkResolver(Connection conn, int batchSize) throws SQLException {
+		this(conn, batchSize, null);
+	}
+
+	public WorkResolver(Connection conn, int batchSize, WorkCache cache) throws SQLException {
+		this(conn, batchSize, cache, null);
+	}
+
+	/**
+	 * @param cache cache of resolved works or null to load all works from MySQL
+	 * @param filter filter of resolved DOIs or null to look up every DOI
+	 */
+	public WorkResolver(Connection conn, int batchSize, WorkCache cache, ResolvedFilter filter) throws SQLException {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size must be positive");
+
+		String placeholders = StringUtils.repeat("?", ",", batchSize);
+
+		this.conn = conn;
+		this.batchSize = batchSize;
+		this.cache = cache;
+		this.filter = filter;
+		this.selectWork = conn.prepareStatement(SELECT_WORK);
+		this.selectWorks = conn.prepareStatement(String.format(SELECT_WORKS, placeholders));
+		this.selectAuthors = conn.prepareStatement(SELECT_AUTHORS);
+		this.selectAuthorsIn = conn.prepareStatement(String.format(SELECT_AUTHORS_IN, placeholders));
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the registry, what the number of DOIs and the MySQL lookup times will be reported to.
+	 * Resolvers using the same registry share the metrics.
+	 * @param metrics
+	 */
+	public void setMetrics(MetricRegistry metrics) {
+		dois = metrics.counter(METRIC_DOIS);
+		lookupTime = metrics.histogram(METRIC_LOOKUP);
+	}
+
+	/**
+	 * Function to resolve a range of positions in the reference table by one scan of the tables
+	 * (see {@link WorkScanner}). Resolved works are added to the cache.
+	 * @param entries entry numbers in the processing order or null to use the table order
+	 * @return the scanner with the scan statistics
+	 */
+	public WorkScanner scanWorks(ReferenceTable references, int[] entries, int from, int to, 
+			WorkScanner.WorkConsumer consumer) throws Exception {
+		WorkScanner scanner = new WorkScanner(conn, this);
+		scanner.scan(references, entries, from, to, (work, position) -> {
+			dois.increment();
+			if (null != cache && work.isResolved())
+				cache.put(work);
+
+			consumer.accept(work, position);
+		});
+
+		return scanner;
+	}
+
+	public Work loadWork(String doi) throws SQLException {
+		dois.increment();
+
+		Work cached = null == cache ? null : cache.get(doi);
+		if (null != cached)
+			return cached;
+		if (null != filter && !filter.mightBeResolved(doi))
+			return new Work(doi);
+
+		long started = System.nanoTime();
+		selectWork.setLong(1, DoiFingerprint.of(doi));
+		try (ResultSet rsWork = selectWork.executeQuery()) {
+			while (rsWork.next()) {
+				if (!doi.equalsIgnoreCase(rsWork.getString(2)))
+					continue;
+
+				Work work = readWork(rsWork);
+
+				if (work.isResolved()) {
+					selectAuthors.setLong(1, work.getResolutionId());
+					try (ResultSet rsAuthor = selectAuthors.executeQuery()) {
+						while (rsAuthor.next())
+							work.addAuthor(readAuthor(rsAuthor));
+					}
+
+					if (null != cache)
+						cache.put(work);
+				}
+
+				if (!work.isResolved() && null != filter)
+					filter.addFalsePositive();
+
+				lookupTime.time(started);
+				return work;
+			}
+		}
+
+		lookupTime.time(started);
+		if (null != filter)
+			filter.addFalsePositive();
+
+		return new Work(doi);
+	}
+
+	/**
+	 * Function to resolve a block of DOIs. Blocks larger than the batch size will be split.
+	 * @param dois Collection of DOIs
+	 * @return Map of requested DOI to Work. Every requested DOI will have a Work,
+	 * not existing DOIs will be mapped to a Work what is neither created nor resolved.
+	 * @throws SQLException
+	 */
+	public Map<String, Work> loadWorks(Collection<String> dois) throws SQLException {
+		Map<String, Work> result = new LinkedHashMap<String, Work>();
+
+		String[] block = new String[batchSize];
+		int size = 0;
+		this.dois.add(dois.size());
+		for (String doi : dois) {
+			Work cached = null == cache ? null : cache.get(doi);
+			if (null != cached) {
+				result.put(doi, cached);
+				continue;
+			}
+			if (null != filter && !filter.mightBeResolved(doi)) {
+				// not resolved, the caller will request it
+				result.put(doi, new Work(doi));
+				continue;
+			}
+
+			block[size++] = doi;
+			if (size == batchSize) {
+				loadBlock(block, size, result);
+				size = 0;
+			}
+		}
+
+		if (size > 0)
+			loadBlock(block, size, result);
+
+		return result;
+	}
+
+	/**
+	 * Function to load all works resolved at or after the given time, in blocks of the batch size.
+	 * The works are ordered by the resolution time and id, what is the order of the resolved index,
+	 * and every block continues after the last row of the previous one.
+	 * @param since the earliest resolution time
+	 * @param consumer consumer of the blocks
+	 * @return number of loaded works
+	 * @throws Exception
+	 */
+	public long loadResolvedWorks(Timestamp since, ResolvedWorksConsumer consumer) throws Exception {
+		long count = 0;
+		Timestamp resolved = since;
+		long id = 0;
+
+		try (PreparedStatement selectResolvedWorks = conn.prepareStatement(SELECT_RESOLVED_WORKS)) {
+			// ids start from 1, so the first block includes works resolved exactly at the given time
+			selectResolvedWorks.setInt(4, batchSize);
+
+			while (true) {
+				selectResolvedWorks.setTimestamp(1, resolved);
+				selectResolvedWorks.setTimestamp(2, resolved);
+				selectResolvedWorks.setLong(3, id);
+
+				List<Work> works = new ArrayList<Work>(batchSize);
+				Map<Long, Work> ids = new HashMap<Long, Work>();
+
+				try (ResultSet rsWork = selectResolvedWorks.executeQuery()) {
+					while (rsWork.next()) {
+						Work work = readWork(rsWork);
+
+						works.add(work);
+						ids.put(work.getResolutionId(), work);
+
+						id = work.getResolutionId();
+						resolved = rsWork.getTimestamp(9);
+					}
+				}
+
+				if (works.isEmpty())
+					break;
+
+				loadAuthors(ids);
+				consumer.accept(works, resolved);
+				count += works.size();
+
+				if (works.size() < batchSize)
+					break;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Function to get the time of the last resolution
+	 * @return time or null if no DOI has been resolved
+	 */
+	public static Timestamp getLastResolved(Connection conn) throws SQLException {
+		try (Statement statement = conn.createStatement();
+			 ResultSet rs = statement.executeQuery(SELECT_LAST_RESOLVED)) {
+			return rs.next() ? rs.getTimestamp(1) : null;
+		}
+	}
+
+	private void loadBlock(String[] block, int size, Map<String, Work> result) throws SQLException {
+		// the rows are matched by lower case DOI, what also drops fingerprint collisions
+		Map<String, Work> works = new HashMap<String, Work>();
+		Map<Long, Work> resolved = new HashMap<Long, Work>();
+		long started = System.nanoTime();
+
+		for (int i = 0; i < batchSize; ++i)
+			selectWorks.setLong(i + 1, DoiFingerprint.of(block[Math.min(i, size - 1)]));
+
+		try (ResultSet rsWork = selectWorks.executeQuery()) {
+			while (rsWork.next()) {
+				Work work = readWork(rsWork);
+
+				works.put(DoiFingerprint.normalize(work.getDoi()), work);
+				if (work.isResolved())
+					resolved.put(work.getResolutionId(), work);
+			}
+		}
+
+		if (!resolved.isEmpty())
+			loadAuthors(resolved);
+		lookupTime.time(started);
+
+		if (!resolved.isEmpty()) {
+			if (null != cache)
+				for (Work work : resolved.values())
+					cache.put(work);
+		}
+
+		for (int i = 0; i < size; ++i) {
+			Work work = works.get(DoiFingerprint.normalize(block[i]));
+			if (null == work)
+				work = new Work(block[i]);
+			if (null != filter && !work.isResolved())
+				filter.addFalsePositive();
+
+			result.put(block[i], work);
+		}
+	}
+
+	void loadAuthors(Map<Long, Work> works) throws SQLException {
+		Long[] ids = works.keySet().toArray(new Long[works.size()]);
+
+		for (int offset = 0; offset < ids.length; offset += batchSize) {
+			int size = Math.min(batchSize, ids.length - offset);
+			for (int i = 0; i < batchSize; ++i)
+				selectAuthorsIn.setLong(i + 1, ids[offset + Math.min(i, size - 1)]);
+
+			try (ResultSet rsAuthor = selectAuthorsIn.executeQuery()) {
+				while (rsAuthor.next())
+					works.get(rsAuthor.getLong(1)).addAuthor(readAuthor(rsAuthor));
+			}
+		}
+	}
+
+	static Work readWork(ResultSet rs) throws SQLException {
+		Work work = new Work(rs.getString(2));
+
+		work.setResolutionId(rs.getLong(1));
+		work.setCreated(rs.getDate(8));
+		work.setResolved(rs.getDate(9));
+
+		if (work.isResolved()) {
+			work.setSource(rs.getString(3));
+			work.setSourceUrl(rs.getString(4));
+			work.setUrl(rs.getString(5));
+			work.setTitle(rs.getString(6));
+			work.setYear(rs.getInt(7));
+		}
+
+		return work;
+	}
+
+	static Author readAuthor(ResultSet rs) throws SQLException {
+		Author author = new Author();
+
+		author.setFirstName(rs.getString(2));
+		author.setLastName(rs.getString(3));
+		author.setFullName(rs.getString(4));
+		author.setOrcid(rs.getString(5));
+
+		return author;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		selectWork.close();
+		selectWorks.close();
+		selectAuthors.close();
+		selectAuthorsIn.close();
+	}
+}
@@ -0,0 +1,220 @@
+package org.researchgraph.connector;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class to resolve all referenced DOIs by one sequential scan of the doi_resolution table
+ *
+ * The table is read in pages of the primary key and every row is hash joined against the
+ * fingerprints of the referenced DOIs (see {@link DoiFingerprint}). Authors of the resolved
+ * works of a page are loaded by the resolver in blocks, and the page is passed to the consumer
+ * before the next one is read, so only one page of works is kept in memory. When most of 
+ * the table is referenced, the scan is much faster than point lookups of every DOI.
+ *
+ * Works are passed in the table order. DOIs not existing in doi_resolution are passed 
+ * after the scan as works without a resolution id.
+ */
+
+public class WorkScanner {
+	public static final int PAGE_SIZE = 10000;
+
+	private static final String SELECT_WORKS = "SELECT id, doi, source, source_url, url, title, year, created, resolved, doi_hash FROM doi_resolution WHERE id>? ORDER BY id LIMIT ?";
+	private static final String SELECT_ROW_COUNT = "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME='doi_resolution'";
+
+	private final Connection conn;
+	private final WorkResolver resolver;
+
+	private long scannedWorks;
+	private long matchedWorks;
+	private long matchedAuthors;
+	private long elapsed;
+
+	public interface WorkConsumer {
+		/**
+		 * @param work work with authors, or a work without a resolution id if the DOI does not exist
+		 * @param position position of the DOI
+		 */
+		void accept(Work work, int position) throws Exception;
+	}
+
+	/**
+	 * @param resolver resolver loading authors of the scanned works, using the same connection
+	 */
+	public WorkScanner(Connection conn, WorkResolver resolver) {
+		this.conn = conn;
+		this.resolver = resolver;
+	}
+
+	/**
+	 * Function to get the estimated number of rows in the doi_resolution table.
+	 * The estimate comes from the table statistics and does not count the rows.
+	 * @return number of rows or 0 if it is not known
+	 */
+	public static long estimateRowCount(Connection conn) throws SQLException {
+		try (Statement statement = conn.createStatement();
+			 ResultSet rs = statement.executeQuery(SELECT_ROW_COUNT)) {
+			return rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+
+	/**
+	 * Function to load works of a range of positions in the reference table. 
+	 * Only the DOIs of the range are joined, so a resumed run scans for the rest of the DOIs only.
+	 * @param entries entry numbers in the processing order or null to use the table order
+	 * @param consumer consumer of every DOI of the range, called exactly once per position
+	 * @throws Exception
+	 */
+	public void scan(ReferenceTable references, int[] entries, int from, int to, WorkConsumer consumer) throws Exception {
+		long started = System.nanoTime();
+
+		FingerprintIndex index = new FingerprintIndex(to - from);
+		for (int position = from; position < to; ++position)
+			index.add(DoiFingerprint.of(getDoi(references, entries, position)), position);
+
+		BitSet matched = new BitSet(to - from);
+		List<Work> works = new ArrayList<Work>(PAGE_SIZE);
+		int[] positions = new int[PAGE_SIZE];
+		Map<Long, Work> resolved = new HashMap<Long, Work>();
+		long lastId = 0;
+		int rows;
+
+		try (PreparedStatement selectWorks = conn.prepareStatement(SELECT_WORKS)) {
+			selectWorks.setInt(2, PAGE_SIZE);
+
+			do {
+				rows = 0;
+				selectWorks.setLong(1, lastId);
+				try (ResultSet rsWork = selectWorks.executeQuery()) {
+					while (rsWork.next()) {
+						++rows;
+						lastId = rsWork.getLong(1);
+						long fingerprint = rsWork.getLong(10);
+						if (rsWork.wasNull())
+							continue;
+
+						// case variants of the DOI have own positions, all of them get the work
+						int[] found = index.find(fingerprint, rsWork.getString(2), references, entries);
+						Work work = null;
+						for (int position : found) {
+							if (matched.get(position - from))
+								continue;
+
+							if (null == work) {
+								work = WorkResolver.readWork(rsWork);
+								if (work.isResolved())
+									resolved.put(work.getResolutionId(), work);
+								++matchedWorks;
+							}
+
+							matched.set(position - from);
+							if (works.size() == positions.length)
+								positions = Arrays.copyOf(positions, positions.length * 2);
+							positions[works.size()] = position;
+							works.add(work);
+						}
+					}
+				}
+
+				scannedWorks += rows;
+
+				if (!resolved.isEmpty()) {
+					resolver.loadAuthors(resolved);
+					for (Work work : resolved.values())
+						matchedAuthors += work.getAuthors().size();
+				}
+
+				for (int i = 0; i < works.size(); ++i)
+					consumer.accept(works.get(i), positions[i]);
+
+				works.clear();
+				resolved.clear();
+			} while (rows == PAGE_SIZE);
+		}
+
+		for (int i = matched.nextClearBit(0); i < to - from; i = matched.nextClearBit(i + 1))
+			consumer.accept(new Work(getDoi(references, entries, from + i)), from + i);
+
+		elapsed = System.nanoTime() - started;
+	}
+
+	public long getScannedWorks() {
+		return scannedWorks;
+	}
+
+	public long getMatchedWorks() {
+		return matchedWorks;
+	}
+
+	public void printStatistics(PrintStream out) {
+		out.println( String.format("%d works has been scanned in %d ms, %d works with %d authors has been matched.",
+				scannedWorks, elapsed / 1000000, matchedWorks, matchedAuthors) );
+	}
+
+	private static String getDoi(ReferenceTable references, int[] entries, int position) {
+		return references.getDoi(null == entries ? position : entries[position]);
+	}
+
+	/**
+	 * An open addressing hash table of DOI fingerprints to positions
+	 */
+	private static class FingerprintIndex {
+		// fingerprints are never negative
+		private static final long EMPTY = -1;
+		private static final int[] NOT_FOUND = new int[0];
+
+		private final long[] fingerprints;
+		private final int[] positions;
+
+		FingerprintIndex(int expected) {
+			int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1) << 1;
+			fingerprints = new long[capacity];
+			positions = new int[capacity];
+			Arrays.fill(fingerprints, EMPTY);
+		}
+
+		void add(long fingerprint, int position) {
+			int mask = fingerprints.length - 1;
+			int slot = (int) fingerprint & mask;
+			while (EMPTY != fingerprints[slot])
+				slot = (slot + 1) & mask;
+
+			fingerprints[slot] = fingerprint;
+			positions[slot] = position;
+		}
+
+		/**
+		 * Function to find all positions of a DOI, what are the case variants of the DOI. 
+		 * Fingerprint collisions are matched by the full DOI.
+		 * @return positions, empty if the DOI is not referenced
+		 */
+		int[] find(long fingerprint, String doi, ReferenceTable references, int[] entries) {
+			int mask = fingerprints.length - 1;
+			String normalized = null;
+			int[] found = NOT_FOUND;
+			for (int slot = (int) fingerprint & mask; EMPTY != fingerprints[slot]; slot = (slot + 1) & mask) {
+				if (fingerprints[slot] != fingerprint)
+					continue;
+
+				if (null == normalized)
+					normalized = DoiFingerprint.normalize(doi);
+				if (normalized.equals(DoiFingerprint.normalize(getDoi(references, entries, positions[slot])))) {
+					found = Arrays.copyOf(found, found.length + 1);
+					found[found.length - 1] = positions[slot];
+				}
+			}
+
+			return found;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package org.researchgraph.connector;
+
+/**
+ * A class to collect statistics of a single resolver worker
+ *
+ * Statistics are updated by the worker thread only and must be read after the worker has finished.
+ */
+
+public class WorkerStatistics {
+	private final String name;
+	private long batches = 0;
+	private long dois = 0;
+	private long chunks = 0;
+	private long nanos = 0;
+
+	public WorkerStatistics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getBatches() {
+		return batches;
+	}
+
+	public long getDois() {
+		return dois;
+	}
+
+	public long getChunks() {
+		return chunks;
+	}
+
+	public double getSeconds() {
+		return nanos / 1e9;
+	}
+
+	/**
+	 * Function to get worker throughput
+	 * @return number of DOIs resolved per second of the worker busy time
+	 */
+	public double getThroughput() {
+		return 0 == nanos ? 0 : dois / getSeconds();
+	}
+
+	public void addBatch(int dois, int chunks, long nanos) {
+		++this.batches;
+		this.dois += dois;
+		this.chunks += chunks;
+		this.nanos += nanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Worker %s: %d batches, %d DOIs resolved into %d chunks in %.1f s (%.0f DOIs/s).",
+				name, batches, dois, chunks, getSeconds(), getThroughput());
+	}
+}
@@ -1,20 +1,61 @@
 package org.researchgraph.graph;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A class to hold a label and a property, what identify nodes
+ *
+ * There are only a few distinct indexes, so instances created by valueOf are shared.
+ * The shared instances are held by label and property, so a lookup allocates nothing.
+ * The hash code is computed once.
+ */
 
 public class GraphIndex {
+	// the concurrent map does not allow null keys
+	private static final Object NULL = new Object();
+	private static final ConcurrentMap<Object, ConcurrentMap<Object, GraphIndex>> indexes = 
+			new ConcurrentHashMap<Object, ConcurrentMap<Object, GraphIndex>>();
+	
 	private final String label;
 	private final String property;
+	private final int hash;
 	
 	public GraphIndex(String label) {
-		this.label = label;
-		this. property = GraphUtils.PROPERTY_KEY;
+		this(label, GraphUtils.PROPERTY_KEY);
 	}
 
 	public GraphIndex(String label, String  property) {
 		this.label = label;
 		this. property =  property;
+		// the same value as HashCodeBuilder(17, 37) has computed
+		this.hash = (17 * 37 + Objects.hashCode(label)) * 37 + Objects.hashCode(property);
+	}
+	
+	/**
+	 * Function to get the shared instance of an index with the key property
+	 */
+	public static GraphIndex valueOf(String label) {
+		return valueOf(label, GraphUtils.PROPERTY_KEY);
+	}
+	
+	/**
+	 * Function to get the shared instance of an index
+	 */
+	public static GraphIndex valueOf(String label, String property) {
+		Object labelKey = null == label ? NULL : label;
+		Object propertyKey = null == property ? NULL : property;
+		
+		ConcurrentMap<Object, GraphIndex> properties = indexes.get(labelKey);
+		if (null == properties)
+			properties = indexes.computeIfAbsent(labelKey, l -> new ConcurrentHashMap<Object, GraphIndex>());
+		
+		GraphIndex index = properties.get(propertyKey);
+		if (null == index)
+			index = properties.computeIfAbsent(propertyKey, p -> new GraphIndex(label, property));
+		
+		return index;
 	}
 	
 	public String getLabel() {
@@ -27,10 +68,7 @@ public class GraphIndex {
 
 	@Override
 	public int hashCode() {
-		return new HashCodeBuilder(17, 37)
-				.append(label)
-				.append(property)
-				.toHashCode();
+		return hash;
 	}
 
 	@Override
@@ -46,10 +84,9 @@ public class GraphIndex {
 		}
 		
 		GraphIndex other = (GraphIndex) obj;
-		return new EqualsBuilder()
-                .append(label, other.label)
-                .append(property, other.property)
-                .isEquals();
+		return hash == other.hash 
+				&& Objects.equals(label, other.label) 
+				&& Objects.equals(property, other.property);
 	}
 
 	@Override
@@ -76,7 +113,7 @@ public class GraphIndex {
 		}
 		
 		public GraphIndex build() {
-			return new GraphIndex(label, property); 
+			return valueOf(label, property); 
 		}
 	}
 }
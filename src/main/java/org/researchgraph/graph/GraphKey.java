@@ -3,23 +3,40 @@ package org.researchgraph.graph;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+/**
+ * A class to hold the index and the value of a node key
+ *
+ * The hash code is computed once. Array values are hashed and compared by elements.
+ */
+
 public class GraphKey  {
 	private final GraphIndex index;
 	private final Object value;
+	private final int hash;
 
 	public GraphKey(GraphIndex index, Object value) {
 		this.index = index;
 		this.value = value;
+		this.hash = hash(index, value);
 	}
 	 	
 	public GraphKey(String label, Object value) {
-		this.index = new GraphIndex(label);
-		this.value = value;
+		this(GraphIndex.valueOf(label), value);
 	}
 
 	public GraphKey(String label, String property, Object value) {
-		this.index = new GraphIndex(label, property);
-		this.value = value;
+		this(GraphIndex.valueOf(label, property), value);
+	}
+	
+	private static int hash(GraphIndex index, Object value) {
+		if (null != value && value.getClass().isArray())
+			return new HashCodeBuilder(17, 37)
+					.append(index)
+					.append(value)
+					.toHashCode();
+		
+		// the same value as HashCodeBuilder(17, 37) has computed
+		return (17 * 37 + (null == index ? 0 : index.hashCode())) * 37 + (null == value ? 0 : value.hashCode());
 	}
 	
 	public GraphIndex getIndex() {
@@ -40,10 +57,7 @@ public class GraphKey  {
 	
 	@Override
 	public int hashCode() {
-		return new HashCodeBuilder(17, 37)
-				.append(index)
-				.append(value)
-				.toHashCode();
+		return hash;
 	}
 
 	@Override
@@ -59,10 +73,16 @@ public class GraphKey  {
 		}
 		
 		GraphKey other = (GraphKey) obj;
-		return new EqualsBuilder()
-                .append(index, other.index)
-                .append(value, other.value)
-                .isEquals();
+		if (hash != other.hash || (index != other.index && (null == index || !index.equals(other.index))))
+			return false;
+		if (value == other.value)
+			return true;
+		if (null == value || null == other.value)
+			return false;
+		if (value.getClass().isArray())
+			return new EqualsBuilder().append(value, other.value).isEquals();
+		
+		return value.equals(other.value);
 	}
 	
 	@Override
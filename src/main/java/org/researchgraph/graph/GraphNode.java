@@ -47,11 +47,11 @@ public class GraphNode extends GraphProperties {
 	}
 	
 	public void setKey(String index, Object value) {
-		setKey(new GraphIndex(index), value);
+		setKey(GraphIndex.valueOf(index), value);
 	}
 
 	public void setKey(String index, String key, Object value) {
-		setKey(new GraphIndex(index, key), value);
+		setKey(GraphIndex.valueOf(index, key), value);
 	}
 
 	public Map<GraphIndex, Object> getIndexes() {
@@ -71,11 +71,11 @@ public class GraphNode extends GraphProperties {
 	}
 	
 	public void setIndex(String index, Object value) {
-		setIndex(new GraphIndex(index), value);
+		setIndex(GraphIndex.valueOf(index), value);
 	}
 
 	public void setIndex(String index, String key, Object value) {
-		setIndex(new GraphIndex(index, key), value);
+		setIndex(GraphIndex.valueOf(index, key), value);
 	}
 
 	public boolean hasNodeSource() {
@@ -157,11 +157,11 @@ public class GraphNode extends GraphProperties {
 		}
 	
 		public Builder withKey(String index, Object value) {
-			return withKey(new GraphIndex(index), value);
+			return withKey(GraphIndex.valueOf(index), value);
 		}
 
 		public Builder withKey(String index, String property, Object value) {
-			return withKey(new GraphIndex(index, property), value);
+			return withKey(GraphIndex.valueOf(index, property), value);
 		}
 	
 		public Builder withIndex(GraphIndex index, Object value) {
@@ -174,11 +174,11 @@ public class GraphNode extends GraphProperties {
 		}
 	
 		public Builder withIndex(String index, Object value) {
-			return withIndex(new GraphIndex(index), value);
+			return withIndex(GraphIndex.valueOf(index), value);
 		}
 
 		public Builder withIndex(String index, String property, Object value) {
-			return withIndex(new GraphIndex(index, property), value);
+			return withIndex(GraphIndex.valueOf(index, property), value);
 		}
 	
 		public Builder withProperties(Map<String, Object> properties) {
@@ -224,6 +224,6 @@ public class GraphNode extends GraphProperties {
 	
 	@Override
 	public String toString() {
-		return "GraphNode [key=" + key + ", labels=" + labels + ", indexes=" + indexes + ", properties=" + properties + "]";
+		return "GraphNode [key=" + key + ", labels=" + labels + ", indexes=" + indexes + ", properties=" + super.toString() + "]";
 	}
 }
@@ -1,19 +1,33 @@
 package org.researchgraph.graph;
 
+import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+
+/**
+ * A class to store properties of a node or a relationship
+ *
+ * Every property has a set of values. A property with a single value keeps the value itself,
+ * a property with several values keeps them in a sorted array without duplicates,
+ * what is replaced when a value is added. Arrays are never changed, so they can be shared
+ * by clones and returned without copying. A property without values is not stored.
+ */
 
 public class GraphProperties {
-	protected Map<String, Set<Object>> properties = new HashMap<String, Set<Object>>();
-	
+	private static final Class<?>[] ARRAY_TYPES = { String[].class, Boolean[].class, Byte[].class, Short[].class,
+			Integer[].class, Long[].class, Float[].class, Double[].class };
+
+	protected Map<String, Object> properties = new HashMap<String, Object>();
+
 	public GraphProperties() {
-		
+
 	}
-	
+
 	public GraphProperties(Map<String, Object> properties) {
 		// Add Properties will work faster
 		addProperties(properties);
@@ -23,150 +37,176 @@ public class GraphProperties {
 		return properties.containsKey(key);
 	}
 
-	
+	/**
+	 * @return a single value, an array of values or null if the property does not exists.
+	 * The array must not be modified.
+	 */
 	public Object getProperty(String key) {
-		return getProperty(properties.get(key));
+		return properties.get(key);
 	}
-	
+
 	public void setProperty(String key, Object value) {
-		if (null != value) {
-			Set<Object> set = properties.get(key);
-			if (null == set) 
-				properties.put(key, set = new HashSet<Object>());
-			else
-				set.clear();
-			
-			setProperty(set, value);
-		} else
-			properties.remove(key);			
+		Object values = null == value ? null : merge(null, value);
+		if (null != values)
+			properties.put(key, values);
+		else
+			properties.remove(key);
 	}
-	
+
 	public void setPropertyOnce(String key, Object value) {
-		if (null != value) {
-			Set<Object> set = properties.get(key);
-			if (null == set) {
-				properties.put(key,  set = new HashSet<Object>());
-				setProperty(set, value);
-			} 
-		} 			
-	}
-	
+		if (null != value && !properties.containsKey(key)) {
+			Object values = merge(null, value);
+			if (null != values)
+				properties.put(key, values);
+		}
+	}
+
 	public void addProperty(String key, Object value) {
 		if (null != value) {
-			Set<Object> set = properties.get(key);
-			if (null == set) {
-				set = new HashSet<Object>();
-				properties.put(key, set);
-			} 
-			
-			setProperty(set, value);
-		} 			
-	}
-	
-	public Map<String, Object> getProperties() {
-		Map<String, Object> result = new HashMap<String, Object>();
-		for (Map.Entry<String, Set<Object>> entry : properties.entrySet()) {
-			Object value = getProperty(entry.getValue());
-			if (null != value)
-				result.put(entry.getKey(), value);
+			Object current = properties.get(key);
+			Object values = merge(current, value);
+			if (values != current && null != values)
+				properties.put(key, values);
 		}
-		
-		return result;
 	}
-	
+
+	/**
+	 * Function to get all properties
+	 * @return read-only view of the properties, what must not be modified
+	 */
+	public Map<String, Object> getProperties() {
+		return Collections.unmodifiableMap(properties);
+	}
+
 	public void setProperties(Map<String, Object> map) {
-		if (null != map) 
-			for (Map.Entry<String, Object> entry : map.entrySet()) 
+		if (null != map)
+			for (Map.Entry<String, Object> entry : map.entrySet())
 				setProperty(entry.getKey(), entry.getValue());
 	}
 
 	public void addProperties(Map<String, Object> map) {
-		if (null != map) 
-			for (Map.Entry<String, Object> entry : map.entrySet()) 
+		if (null != map)
+			for (Map.Entry<String, Object> entry : map.entrySet())
 				addProperty(entry.getKey(), entry.getValue());
 	}
 
-	protected static Object getProperty(Set<Object> set) {
-		if (null == set)
-			return null;
-		int size = set.size();
-		if (0 == size)
-			return null;
-		
-		Object element = set.iterator().next();
-		if (1 == size)
-			return element;
-		if (element instanceof Boolean)
-			return set.toArray(new Boolean[size]);
-		if (element instanceof Byte)
-			return set.toArray(new Byte[size]);
-		if (element instanceof Short)
-			return set.toArray(new Short[size]);
-		if (element instanceof Integer)
-			return set.toArray(new Integer[size]);
-		if (element instanceof Long)
-			return set.toArray(new Long[size]);
-		if (element instanceof Float)
-			return set.toArray(new Float[size]);
-		if (element instanceof Double)
-			return set.toArray(new Double[size]);
-		if (element instanceof String)
-			return set.toArray(new String[size]);
-		
-		throw new ClassCastException("Unable to convert Property Array, they property type: " + element.getClass() + " is not supported");
-	}
-
-	protected static void setProperty(Set<Object> set, Object value) {
-		if (value instanceof String[]) 
-			set.addAll(Arrays.asList((String[]) value));
-		else if (value instanceof Boolean[])
-			set.addAll(Arrays.asList((Boolean[]) value));
-		else if (value instanceof Byte[])
-			set.addAll(Arrays.asList((Byte[]) value));
-		else if (value instanceof Short[])
-			set.addAll(Arrays.asList((Short[]) value));
-		else if (value instanceof Integer[])
-			set.addAll(Arrays.asList((Integer[]) value));
-		else if (value instanceof Long[])
-			set.addAll(Arrays.asList((Long[]) value));
-		else if (value instanceof Float[])
-			set.addAll(Arrays.asList((Float[]) value));
-		else if (value instanceof Double[])
-			set.addAll(Arrays.asList((Double[]) value));
-		/*else if (value instanceof Object[])
-			set.addAll(Arrays.asList((Object[]) value));*/
-		else if (value instanceof Collection<?>)
-			set.addAll((Collection<?>) value);
-		else if (value instanceof Map<?,?>)
+	/**
+	 * Function to add values to the current values of a property
+	 * @param current current single value or array of values, or null
+	 * @param value value, array or collection of values
+	 * @return single value or array, the current values if nothing has been added or null if there is no value
+	 */
+	protected static Object merge(Object current, Object value) {
+		// the most common case, a single value
+		if (!(value instanceof Collection<?>) && !value.getClass().isArray()) {
+			if (value instanceof Map<?,?>)
+				throw new IllegalArgumentException("Maps as Parameters are not supported");
+			if (null == current || current.equals(value))
+				return null == current ? value : current;
+		}
+
+		List<Object> values = new ArrayList<Object>();
+		if (null != current) {
+			if (current.getClass().isArray())
+				values.addAll(Arrays.asList((Object[]) current));
+			else
+				values.add(current);
+		}
+
+		int size = values.size();
+		addValues(values, value);
+		if (values.size() == size)
+			return current;
+
+		return toProperty(values);
+	}
+
+	private static void addValues(List<Object> values, Object value) {
+		if (value instanceof Collection<?>) {
+			for (Object element : (Collection<?>) value)
+				if (null != element)
+					values.add(element);
+		} else if (value.getClass().isArray()) {
+			if (!isSupportedArray(value.getClass()))
+				throw new IllegalArgumentException("Array myst be of Primitive type");
+			for (Object element : (Object[]) value)
+				if (null != element)
+					values.add(element);
+		} else if (value instanceof Map<?,?>)
 			throw new IllegalArgumentException("Maps as Parameters are not supported");
-		else if (value.getClass().isArray())
-			throw new IllegalArgumentException("Array myst be of Primitive type");
 		else
-			set.add(value);
+			values.add(value);
+	}
+
+	private static boolean isSupportedArray(Class<?> type) {
+		for (Class<?> arrayType : ARRAY_TYPES)
+			if (arrayType == type)
+				return true;
+
+		return false;
+	}
+
+	private static Object toProperty(List<Object> values) {
+		if (values.isEmpty())
+			return null;
+
+		Object element = values.get(0);
+		Class<?> type = element.getClass();
+		if (!isSupportedArray(Array.newInstance(type, 0).getClass())) {
+			if (values.stream().allMatch(element::equals))
+				return element;
+
+			throw new ClassCastException("Unable to convert Property Array, they property type: " + type + " is not supported");
+		}
+
+		Object[] array = (Object[]) Array.newInstance(type, values.size());
+		try {
+			values.toArray(array);
+		} catch (ArrayStoreException e) {
+			throw new ClassCastException("Unable to convert Property Array, the values have different types: " + values);
+		}
+
+		Arrays.sort(array);
+		int size = 1;
+		for (int i = 1; i < array.length; ++i)
+			if (!array[i].equals(array[size - 1]))
+				array[size++] = array[i];
+
+		return 1 == size ? array[0] : Arrays.copyOf(array, size);
 	}
-		
+
 	@Override
 	public GraphProperties clone() {
 		GraphProperties node = new GraphProperties();
 		if (null != properties)
-			for (Map.Entry<String, Set<Object>> entry : properties.entrySet()) 
-				node.setProperty(entry.getKey(), new HashSet<Object>(entry.getValue()));
+			node.properties.putAll(properties);
 		return node;
 	}
-	
+
 	public GraphProperties clone(String ... keys) {
 		GraphProperties node = new GraphProperties();
 		if (null != properties)
 		for (String key : keys) {
-			Set<Object> property = properties.get(key);
+			Object property = properties.get(key);
 			if (null != property)
-				node.setProperty(key, new HashSet<Object>(property));
+				node.properties.put(key, property);
 		}
 		return node;
 	}
 
 	@Override
 	public String toString() {
-		return this.properties.toString();
-	}	
+		StringBuilder sb = new StringBuilder("{");
+		for (Map.Entry<String, Object> entry : properties.entrySet()) {
+			if (sb.length() > 1)
+				sb.append(", ");
+			sb.append(entry.getKey()).append('=');
+			if (entry.getValue() instanceof Object[])
+				sb.append(Arrays.toString((Object[]) entry.getValue()));
+			else
+				sb.append('[').append(entry.getValue()).append(']');
+		}
+
+		return sb.append('}').toString();
+	}
 }
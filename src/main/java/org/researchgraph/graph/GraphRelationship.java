@@ -118,6 +118,6 @@ public class GraphRelationship extends GraphProperties {
 	@Override
 	public String toString() {
 		return "GraphRelationship [relationship=" + relationship + ", start="
-				+ start + ", end=" + end + ", properties=" + properties + "]";
+				+ start + ", end=" + end + ", properties=" + super.toString() + "]";
 	}
 }
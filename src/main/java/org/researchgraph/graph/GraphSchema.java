@@ -26,12 +26,12 @@ public class GraphSchema {
 	}
 
 	public GraphSchema(String label, boolean unique) {
-		this.index = new GraphIndex(label);
+		this.index = GraphIndex.valueOf(label);
 		this.unique = unique;
 	}
 
 	public GraphSchema(String label, String property, boolean unique) {
-		this.index = new GraphIndex(label, property);
+		this.index = GraphIndex.valueOf(label, property);
 		this.unique = unique;
 	}
 	
@@ -73,6 +73,9 @@ public class GraphUtils {
 	public static final String PROPERTY_DELETED = "deleted";
 	public static final String PROPERTY_BROKEN = "broken";
 	
+	// pseudo property used to address existing nodes by their database id, it is never stored
+	public static final String PROPERTY_NODE_ID = "@id";
+	
 	// meta-data sources
 /*	public static final String SOURCE_SYSTEM = "system";
 	public static final String SOURCE_ANDS = "ands";
@@ -109,8 +112,6 @@ public class GraphUtils {
 	public static final String SCOPUS_PARTNER_ID = "MN8TOARS";
 	
 	private static final String URL_REGEX = "^((https?|ftp)://|(www|ftp)\\.)?[a-z0-9-]+(\\.[a-z0-9-]+)+([/?].*)?$";
-	//private static final String DOI_REGEX = "\\d{2,}(\\.\\d{4,})?/.+$";
-	private static final String DOI_REGEX = "\\d+(\\.\\d+)*/.+$";
 	private static final String ORCID_REGEX = "\\d{4}-\\d{4}-\\d{4}-\\d{3}(\\d|X)";
 	private static final String SCOPUS_AUTHOR_REGEX = "author[iI][dD]=\\d+";
 	private static final String SCOPUS_PARTNER_REGEX = "partner[iI][dD]=[A-Z0-9]+";
@@ -127,6 +128,9 @@ public class GraphUtils {
     private static final String PART_ORCID_URI = "orcid.org/";
     private static final String PART_DOI_PERFIX = "doi:";
     private static final String PART_DOI_URI = "dx.doi.org/";
+    private static final String PART_DOI_ORG = "doi.org/";
+    private static final String PART_DOI_ORG_HTTP = "http://doi.org/";
+    private static final String PART_DOI_ORG_HTTPS = "https://doi.org/";
     private static final String PART_SCOPUS_URL = "www.scopus.com/inward/authorDetails.url?authorID=%s&partnerID=%s";
     private static final String PART_SCOPUS_EID_URL = "www.scopus.com/inward/record.url?eid=%s&partnerID=%s";
     private static final String PART_ARC_PURL = "purl.org/au-research/grants/arc/";
@@ -135,7 +139,6 @@ public class GraphUtils {
     private static final String PART_ANDS_URL = "https://researchdata.ands.org.au/view/?key=";
     
     private static final Pattern patternUrl = Pattern.compile(URL_REGEX);
-    private static final Pattern patternDoi = Pattern.compile(DOI_REGEX);
     private static final Pattern patternOrcid = Pattern.compile(ORCID_REGEX);
     private static final Pattern patternScopusAuthor = Pattern.compile(SCOPUS_AUTHOR_REGEX);
     private static final Pattern patternScopusPartner = Pattern.compile(SCOPUS_PARTNER_REGEX);
@@ -284,26 +287,71 @@ public class GraphUtils {
 	
 	/**
 	 * Function to extract DOI
+	 * 
+	 * The DOI is the first number with dot separated parts, followed by a slash and at least one character 
+	 * up to the end of the string or a single final line separator. Anything before the doi: prefix and 
+	 * the dx.doi.org/ part will be skipped. The string is scanned in place, only the result is allocated.
+	 * 
 	 * @param str String containing DOI or DOI URL
 	 * @return String containing DOI or null if DOI can not be extracted
 	 */
 	public static String extractDoi(String str) {
-		if (StringUtils.isNotEmpty(str)) {
-			int pos = str.indexOf(PART_DOI_PERFIX);
-			if (pos >= 0) 
-				str = str.substring(pos + PART_DOI_PERFIX.length());
+		if (StringUtils.isEmpty(str)) 
+			return null;
+		
+		int start = str.indexOf(PART_DOI_PERFIX);
+		start = start >= 0 ? start + PART_DOI_PERFIX.length() : 0;
+		
+		int pos = str.indexOf(PART_DOI_URI, start);
+		if (pos >= 0) 
+			start = pos + PART_DOI_URI.length();
+		else if (str.startsWith(PART_DOI_ORG, start))
+			start += PART_DOI_ORG.length();
+		else if (str.startsWith(PART_DOI_ORG_HTTP, start))
+			start += PART_DOI_ORG_HTTP.length();
+		else if (str.startsWith(PART_DOI_ORG_HTTPS, start))
+			start += PART_DOI_ORG_HTTPS.length();
+		
+		int length = str.length();
+		for (int i = start; i < length; ++i) {
+			if (!isDigit(str.charAt(i)))
+				continue;
 			
-			pos = str.indexOf(PART_DOI_URI);
-			if (pos >= 0) 
-				str = str.substring(pos + PART_DOI_URI.length());
+			// the prefix is digits, optionally followed by dot and digits parts 
+			int prefix = i;
+			while (i < length && isDigit(str.charAt(i)))
+				++i;
+			while (i + 1 < length && '.' == str.charAt(i) && isDigit(str.charAt(i + 1))) 
+				for (i += 2; i < length && isDigit(str.charAt(i)); ++i);
 			
-    		Matcher matcher = patternDoi.matcher(str);
-    		if (matcher.find()) 
-    			return matcher.group();
-    	}
-    	
+			if (i == length)
+				break;
+			if ('/' != str.charAt(i))
+				continue;
+			
+			// the suffix ends at the first line separator, what must be the last one
+			int end = i + 1;
+			while (end < length && !isLineSeparator(str.charAt(end)))
+				++end;
+			
+			if (end > i + 1 && (end == length || end == length - 1 
+					|| end == length - 2 && '\r' == str.charAt(end) && '\n' == str.charAt(end + 1)))
+				return str.substring(prefix, end);
+			
+			// a later DOI can only follow the line separator
+			i = end;
+		}
+		
 		return null;
 	}
+	
+	private static boolean isDigit(char ch) {
+		return ch >= '0' && ch <= '9';
+	}
+	
+	private static boolean isLineSeparator(char ch) {
+		return '\n' == ch || '\r' == ch || '\u0085' == ch || '\u2028' == ch || '\u2029' == ch;
+	}
 		
 	/**
 	 * Function to extract Scopus Author ID fom Scopus URL
@@ -1,5 +1,6 @@
 package org.researchgraph.graph.interfaces;
 
+import java.io.PrintStream;
 import java.util.Collection;
 
 import org.researchgraph.graph.Graph;
@@ -19,6 +20,9 @@ public interface GraphImporter {
 	void importRelationship(GraphRelationship relationship);
 	void importRelationships(Collection<GraphRelationship> relationships);
 	
+	void printStatistics(PrintStream out);
+	void printUnresolvedRelationships(PrintStream out);
+	
 	boolean isVerbose();
 	void setVerbose(boolean verbose);
 }
@@ -0,0 +1,45 @@
+package org.researchgraph.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.researchgraph.metrics.interfaces.CounterMXBean;
+
+/**
+ * A thread safe counter of events
+ *
+ * The count is striped by LongAdder, so concurrent threads do not contend on a single value.
+ */
+
+public class Counter implements CounterMXBean {
+	private final LongAdder count = new LongAdder();
+	private volatile long started = System.nanoTime();
+
+	public void increment() {
+		count.increment();
+	}
+
+	public void add(long value) {
+		count.add(value);
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public double getMeanRate() {
+		long elapsed = System.nanoTime() - started;
+		return elapsed <= 0 ? 0 : count.sum() * 1e9 / elapsed;
+	}
+
+	public void reset() {
+		count.reset();
+		started = System.nanoTime();
+	}
+
+	@Override
+	public String getSummary() {
+		return String.format("%d (%.1f/sec)", getCount(), getMeanRate());
+	}
+}
@@ -0,0 +1,27 @@
+package org.researchgraph.metrics;
+
+import java.util.function.LongSupplier;
+
+import org.researchgraph.metrics.interfaces.GaugeMXBean;
+
+/**
+ * A metric reading the current value from a supplier, like a queue size
+ */
+
+public class Gauge implements GaugeMXBean {
+	private final LongSupplier supplier;
+
+	public Gauge(LongSupplier supplier) {
+		this.supplier = supplier;
+	}
+
+	@Override
+	public long getValue() {
+		return supplier.getAsLong();
+	}
+
+	@Override
+	public String getSummary() {
+		return Long.toString(getValue());
+	}
+}
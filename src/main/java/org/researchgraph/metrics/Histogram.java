@@ -0,0 +1,138 @@
+package org.researchgraph.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.researchgraph.metrics.interfaces.HistogramMXBean;
+
+/**
+ * A thread safe histogram of latencies in nanoseconds
+ *
+ * Values are counted in log-linear buckets: every power of two is split into four buckets,
+ * so a percentile is reported with an error of at most 25%. Updates only increment striped
+ * counters and never allocate.
+ */
+
+public class Histogram implements HistogramMXBean {
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+	public Histogram() {
+		for (int i = 0; i < BUCKETS; ++i)
+			buckets[i] = new LongAdder();
+	}
+
+	/**
+	 * @param nanos latency in nanoseconds, negative values are counted as 0
+	 */
+	public void update(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+
+		buckets[bucket(nanos)].increment();
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * Function to record the time elapsed since the start
+	 * @param started start time from System.nanoTime()
+	 */
+	public void time(long started) {
+		update(System.nanoTime() - started);
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public double getMean() {
+		long n = count.sum();
+		return 0 == n ? 0 : sum.sum() / NANOS_PER_MILLI / n;
+	}
+
+	@Override
+	public double getMax() {
+		return max.get() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMedian() {
+		return getPercentile(0.5);
+	}
+
+	@Override
+	public double get95thPercentile() {
+		return getPercentile(0.95);
+	}
+
+	@Override
+	public double get99thPercentile() {
+		return getPercentile(0.99);
+	}
+
+	/**
+	 * Function to get the upper bound of the bucket containing the percentile, 
+	 * limited by the maximal value
+	 * @param quantile quantile between 0 and 1
+	 */
+	public double getPercentile(double quantile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; ++i)
+			total += counts[i] = buckets[i].sum();
+
+		if (0 == total)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i)
+			if ((seen += counts[i]) >= rank)
+				return Math.min(upperBound(i), max.get()) / NANOS_PER_MILLI;
+
+		return getMax();
+	}
+
+	public void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	@Override
+	public String getSummary() {
+		return String.format("count %d, mean %.3f ms, median %.3f ms, 95%% %.3f ms, 99%% %.3f ms, max %.3f ms",
+				getCount(), getMean(), getMedian(), get95thPercentile(), get99thPercentile(), getMax());
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int sub = bucket % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -0,0 +1,141 @@
+package org.researchgraph.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.researchgraph.metrics.interfaces.Metric;
+
+/**
+ * A registry of named metrics of the run
+ *
+ * Counters and histograms are created on the first request and shared by every component
+ * asking for the same name, so several workers add to one metric. Once the registry
+ * has been published, every metric is registered in the platform MBean server as
+ * org.researchgraph:type=Counter|Gauge|Histogram,name=metric name and can be watched
+ * by jconsole or any JMX client while the run continues.
+ */
+
+public class MetricRegistry implements AutoCloseable {
+	public static final String JMX_DOMAIN = "org.researchgraph";
+
+	private final Map<String, Metric> metrics = new ConcurrentSkipListMap<String, Metric>();
+	private volatile MBeanServer server;
+
+	public Counter counter(String name) {
+		return get(name, Counter.class, Counter::new);
+	}
+
+	public Histogram histogram(String name) {
+		return get(name, Histogram.class, Histogram::new);
+	}
+
+	/**
+	 * Function to register a gauge, replacing any gauge registered with the same name
+	 */
+	public synchronized Gauge gauge(String name, LongSupplier supplier) {
+		Metric previous = metrics.get(name);
+		if (null != previous && !(previous instanceof Gauge))
+			throw new IllegalArgumentException("Metric " + name + " is not a gauge");
+
+		Gauge gauge = new Gauge(supplier);
+		if (null != previous)
+			unregister(name, previous);
+		metrics.put(name, gauge);
+		register(name, gauge);
+
+		return gauge;
+	}
+
+	public Map<String, Metric> getMetrics() {
+		return metrics;
+	}
+
+	public boolean isPublished() {
+		return null != server;
+	}
+
+	/**
+	 * Function to register all existing and future metrics in the platform MBean server
+	 */
+	public synchronized void publish() throws JMException {
+		if (null != server)
+			return;
+
+		server = ManagementFactory.getPlatformMBeanServer();
+		for (Map.Entry<String, Metric> metric : metrics.entrySet())
+			register(metric.getKey(), metric.getValue());
+	}
+
+	/**
+	 * Function to print all metrics sorted by name, one per line
+	 */
+	public void printStatistics(PrintStream out) {
+		for (Map.Entry<String, Metric> metric : metrics.entrySet())
+			out.println(metric.getKey() + ": " + metric.getValue().getSummary());
+	}
+
+	/**
+	 * Function to unregister all metrics from the MBean server. The metrics are kept.
+	 */
+	@Override
+	public synchronized void close() {
+		if (null == server)
+			return;
+
+		for (Map.Entry<String, Metric> metric : metrics.entrySet())
+			unregister(metric.getKey(), metric.getValue());
+		server = null;
+	}
+
+	private synchronized <T extends Metric> T get(String name, Class<T> type, Supplier<T> factory) {
+		Metric metric = metrics.get(name);
+		if (null == metric) {
+			metric = factory.get();
+			metrics.put(name, metric);
+			register(name, metric);
+		} else if (!type.isInstance(metric))
+			throw new IllegalArgumentException("Metric " + name + " is not a " + type.getSimpleName());
+
+		return type.cast(metric);
+	}
+
+	private void register(String name, Metric metric) {
+		if (null == server)
+			return;
+
+		try {
+			ObjectName objectName = getObjectName(name, metric);
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(metric, objectName);
+		} catch (JMException e) {
+			// the metric is still counted and printed at the end
+			System.err.println("Unable to publish metric " + name + ": " + e.getMessage());
+		}
+	}
+
+	private void unregister(String name, Metric metric) {
+		if (null == server)
+			return;
+
+		try {
+			ObjectName objectName = getObjectName(name, metric);
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			System.err.println("Unable to unpublish metric " + name + ": " + e.getMessage());
+		}
+	}
+
+	private static ObjectName getObjectName(String name, Metric metric) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=" + metric.getClass().getSimpleName() + ",name=" + ObjectName.quote(name));
+	}
+}
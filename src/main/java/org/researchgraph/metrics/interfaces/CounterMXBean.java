@@ -0,0 +1,10 @@
+package org.researchgraph.metrics.interfaces;
+
+public interface CounterMXBean extends Metric {
+	long getCount();
+
+	/**
+	 * @return average number of events per second since the counter has been created or reset
+	 */
+	double getMeanRate();
+}
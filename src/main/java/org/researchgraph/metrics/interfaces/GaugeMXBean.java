@@ -0,0 +1,5 @@
+package org.researchgraph.metrics.interfaces;
+
+public interface GaugeMXBean extends Metric {
+	long getValue();
+}
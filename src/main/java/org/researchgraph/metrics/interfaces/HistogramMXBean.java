@@ -0,0 +1,19 @@
+package org.researchgraph.metrics.interfaces;
+
+/**
+ * A latency histogram, all times are in milliseconds
+ */
+
+public interface HistogramMXBean extends Metric {
+	long getCount();
+
+	double getMean();
+
+	double getMax();
+
+	double getMedian();
+
+	double get95thPercentile();
+
+	double get99thPercentile();
+}
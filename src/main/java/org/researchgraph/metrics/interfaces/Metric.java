@@ -0,0 +1,12 @@
+package org.researchgraph.metrics.interfaces;
+
+/**
+ * A metric, what can be published over JMX and printed at the end of the run
+ */
+
+public interface Metric {
+	/**
+	 * @return one line summary of the current value
+	 */
+	String getSummary();
+}
@@ -0,0 +1,146 @@
+package org.researchgraph.neo4j;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash set of pairs of long values
+ *
+ * Both values are stored in primitive arrays, so the set does not allocate any
+ * object per pair. Removal uses backward shift deletion, so there are no tombstones.
+ * The first value of a pair can not be Long.MIN_VALUE, what marks an empty slot.
+ *
+ * The class is not thread safe.
+ */
+
+public class LongPairSet {
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] firsts;
+	private long[] seconds;
+	private int size = 0;
+
+	public LongPairSet() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return 0 == size;
+	}
+
+	/**
+	 * Function to add a pair to the set
+	 * @return true if the pair has been added, false if it was already in the set
+	 */
+	public boolean add(long first, long second) {
+		if (EMPTY == first)
+			throw new IllegalArgumentException("Invalid value: " + first);
+
+		int mask = firsts.length - 1;
+		int slot = hash(first, second) & mask;
+		while (EMPTY != firsts[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second)
+				return false;
+
+			slot = (slot + 1) & mask;
+		}
+
+		firsts[slot] = first;
+		seconds[slot] = second;
+
+		if (++size * 2 > firsts.length)
+			rehash(firsts.length * 2);
+
+		return true;
+	}
+
+	public boolean contains(long first, long second) {
+		return -1 != find(first, second);
+	}
+
+	/**
+	 * Function to remove a pair from the set
+	 * @return true if the pair has been removed, false if it was not in the set
+	 */
+	public boolean remove(long first, long second) {
+		int slot = find(first, second);
+		if (-1 == slot)
+			return false;
+
+		// shift following pairs of the same cluster back, so lookups never stop at the hole
+		int mask = firsts.length - 1;
+		int hole = slot;
+		for (slot = (hole + 1) & mask; EMPTY != firsts[slot]; slot = (slot + 1) & mask) {
+			int home = hash(firsts[slot], seconds[slot]) & mask;
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				firsts[hole] = firsts[slot];
+				seconds[hole] = seconds[slot];
+				hole = slot;
+			}
+		}
+
+		firsts[hole] = EMPTY;
+		--size;
+
+		return true;
+	}
+
+	public void clear() {
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+	}
+
+	/**
+	 * Function to estimate memory used by the set
+	 * @return number of bytes allocated by the set arrays
+	 */
+	public long getMemoryUsage() {
+		return firsts.length * 16L;
+	}
+
+	private int find(long first, long second) {
+		if (EMPTY == first)
+			return -1;
+
+		int mask = firsts.length - 1;
+		for (int slot = hash(first, second) & mask; EMPTY != firsts[slot]; slot = (slot + 1) & mask)
+			if (firsts[slot] == first && seconds[slot] == second)
+				return slot;
+
+		return -1;
+	}
+
+	private void allocate(int capacity) {
+		firsts = new long[capacity];
+		seconds = new long[capacity];
+		Arrays.fill(firsts, EMPTY);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldFirsts = firsts;
+		long[] oldSeconds = seconds;
+
+		allocate(capacity);
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldFirsts.length; ++i)
+			if (EMPTY != oldFirsts[i]) {
+				int slot = hash(oldFirsts[i], oldSeconds[i]) & mask;
+				while (EMPTY != firsts[slot])
+					slot = (slot + 1) & mask;
+
+				firsts[slot] = oldFirsts[i];
+				seconds[slot] = oldSeconds[i];
+			}
+	}
+
+	private static int hash(long first, long second) {
+		long h = first * 0x9E3779B97F4A7C15L + second;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		return (int) (h ^ (h >>> 32));
+	}
+}
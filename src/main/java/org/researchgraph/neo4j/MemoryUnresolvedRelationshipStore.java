@@ -0,0 +1,68 @@
+package org.researchgraph.neo4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.researchgraph.graph.GraphKey;
+import org.researchgraph.graph.GraphRelationship;
+import org.researchgraph.neo4j.interfaces.UnresolvedRelationshipStore;
+
+/**
+ * A store of unresolved relationships kept in memory
+ *
+ * Relationships are stored under the GraphKey object they already refer to,
+ * so the store does not allocate any key of its own.
+ */
+
+public class MemoryUnresolvedRelationshipStore implements UnresolvedRelationshipStore {
+	private final Map<GraphKey, List<GraphRelationship>> relationships = new HashMap<GraphKey, List<GraphRelationship>>();
+	private long relationshipsCount = 0;
+
+	@Override
+	public void store(GraphKey key, GraphRelationship relationship) {
+		List<GraphRelationship> list = relationships.get(key);
+		if (null == list)
+			relationships.put(key, list = new ArrayList<GraphRelationship>(1));
+
+		list.add(relationship);
+		++relationshipsCount;
+	}
+
+	@Override
+	public List<GraphRelationship> remove(GraphKey key) {
+		List<GraphRelationship> list = relationships.remove(key);
+		if (null != list)
+			relationshipsCount -= list.size();
+
+		return list;
+	}
+
+	public boolean contains(GraphKey key) {
+		return relationships.containsKey(key);
+	}
+
+	public int getKeysCount() {
+		return relationships.size();
+	}
+
+	@Override
+	public long getRelationshipsCount() {
+		return relationshipsCount;
+	}
+
+	@Override
+	public void forEach(BiConsumer<GraphKey, GraphRelationship> consumer) {
+		for (Map.Entry<GraphKey, List<GraphRelationship>> entry : relationships.entrySet())
+			for (GraphRelationship relationship : entry.getValue())
+				consumer.accept(entry.getKey(), relationship);
+	}
+
+	@Override
+	public void close() {
+		relationships.clear();
+		relationshipsCount = 0;
+	}
+}
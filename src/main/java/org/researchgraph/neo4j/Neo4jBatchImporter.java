@@ -0,0 +1,411 @@
+package org.researchgraph.neo4j;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.neo4j.graphdb.ConstraintViolationException;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.neo4j.unsafe.batchinsert.BatchRelationship;
+import org.researchgraph.graph.Graph;
+import org.researchgraph.graph.GraphIndex;
+import org.researchgraph.graph.GraphKey;
+import org.researchgraph.graph.GraphNode;
+import org.researchgraph.graph.GraphRelationship;
+import org.researchgraph.graph.GraphSchema;
+import org.researchgraph.graph.GraphUtils;
+import org.researchgraph.graph.interfaces.GraphImporter;
+import org.researchgraph.metrics.Counter;
+import org.researchgraph.metrics.Histogram;
+import org.researchgraph.metrics.MetricRegistry;
+import org.researchgraph.neo4j.interfaces.UnresolvedRelationshipStore;
+
+/**
+ * A class to import graphs into an offline Neo4j database with the batch inserter
+ *
+ * Nodes and relationships are written without transactions and transaction logs. Nodes are found
+ * by an in-memory map of keys to node ids, what holds every node created by the importer and
+ * every existing node passed to preload(). Indexes and constraints are created when the importer is closed.
+ *
+ * The database must not be used by anybody else until the importer is closed, and it will be
+ * left broken if the import fails. Relationships can only exist between existing nodes,
+ * relationships between created nodes are merged by the relationship cache only.
+ *
+ * The class is not thread safe.
+ */
+
+public class Neo4jBatchImporter implements GraphImporter, AutoCloseable {
+	private final BatchInserter inserter;
+
+	private boolean verbose = false;
+	private Counter nodesCreated = new Counter();
+	private Counter nodesUpdated = new Counter();
+	private Counter relationshipsCreated = new Counter();
+	private Counter relationshipsUpdated = new Counter();
+	private Histogram importTime = new Histogram();
+
+	private final Map<GraphKey, Long> createdNodes = new HashMap<GraphKey, Long>();
+	private final Map<GraphKey, Long> existingNodes = new HashMap<GraphKey, Long>();
+	private RelationshipCache relationshipCache = new RelationshipCache();
+
+	private UnresolvedRelationshipStore unknownRelationships = new SpillingUnresolvedRelationshipStore();
+	private final Set<GraphSchema> deferredSchemas = new LinkedHashSet<GraphSchema>();
+
+	public Neo4jBatchImporter(final String neo4jFolder) throws Exception {
+		if (StringUtils.isEmpty(neo4jFolder))
+			throw new Neo4jException("Please provide path to an existing Neo4j instance");
+
+		try {
+			inserter = BatchInserters.inserter(Neo4jDatabase.GetDbPath(neo4jFolder),
+					MapUtil.load(Neo4jDatabase.GetConfPath(neo4jFolder)));
+		} catch (Neo4jException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new Neo4jException("Unable to open Neo4j instance located at: " + neo4jFolder + ". Error: " + e.getMessage());
+		}
+	}
+
+	public Neo4jBatchImporter(File storeDir) throws Exception {
+		inserter = BatchInserters.inserter(storeDir);
+	}
+
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	public long getNodesCreated() {
+		return nodesCreated.getCount();
+	}
+
+	public long getNodesUpdated() {
+		return nodesUpdated.getCount();
+	}
+
+	public long getRelationshipsCreated() {
+		return relationshipsCreated.getCount();
+	}
+
+	public long getRelationshipsUpdated() {
+		return relationshipsUpdated.getCount();
+	}
+
+	/**
+	 * Sets the registry, what the import counters and times will be reported to,
+	 * under the same names as by the transactional importer.
+	 * @param metrics
+	 */
+	public void setMetrics(MetricRegistry metrics) {
+		nodesCreated = metrics.counter(Neo4jDatabase.METRIC_NODES_CREATED);
+		nodesUpdated = metrics.counter(Neo4jDatabase.METRIC_NODES_UPDATED);
+		relationshipsCreated = metrics.counter(Neo4jDatabase.METRIC_RELATIONSHIPS_CREATED);
+		relationshipsUpdated = metrics.counter(Neo4jDatabase.METRIC_RELATIONSHIPS_UPDATED);
+		importTime = metrics.histogram(Neo4jDatabase.METRIC_IMPORT);
+		metrics.gauge(Neo4jDatabase.METRIC_RELATIONSHIPS_UNRESOLVED, () -> unknownRelationships.getRelationshipsCount());
+	}
+
+	public int getRelationshipCacheSize() {
+		return relationshipCache.getCapacity();
+	}
+
+	/**
+	 * Sets the maximum number of relationships remembered as existing, 0 disables the cache.
+	 * The cache content will be dropped.
+	 * @param relationshipCacheSize
+	 */
+	public void setRelationshipCacheSize(int relationshipCacheSize) {
+		this.relationshipCache = new RelationshipCache(relationshipCacheSize);
+	}
+
+	public UnresolvedRelationshipStore getUnresolvedRelationshipStore() {
+		return unknownRelationships;
+	}
+
+	/**
+	 * Sets the store of relationships waiting for a missing node.
+	 * The previous store will be closed, with all relationships it contains.
+	 * @param store
+	 */
+	public void setUnresolvedRelationshipStore(UnresolvedRelationshipStore store) {
+		if (store != unknownRelationships)
+			unknownRelationships.close();
+		unknownRelationships = store;
+	}
+
+	/**
+	 * Function to register a node what already exists in the database,
+	 * so it will be updated instead of created again
+	 */
+	public void preload(GraphKey key, long nodeId) {
+		existingNodes.put(key, nodeId);
+	}
+
+	public void preload(Map<GraphKey, Long> nodes) {
+		existingNodes.putAll(nodes);
+	}
+
+	public void importGraph(Graph graph) {
+		long started = System.nanoTime();
+
+		importSchemas(graph.getSchemas());
+
+		importNodes(graph.getNodes());
+		importRelationships(graph.getRelationships());
+
+		importTime.time(started);
+	}
+
+	public void importSchemas(Collection<GraphSchema> schemas) {
+		if (null != schemas)
+			deferredSchemas.addAll(schemas);
+	}
+
+	public void importSchema(GraphSchema schema) {
+		deferredSchemas.add(schema);
+	}
+
+	public void importNodes(Collection<GraphNode> nodes) {
+		if (null != nodes) {
+			for (GraphNode node : nodes)
+				writeNode(node);
+			relationshipCache.commit();
+		}
+	}
+
+	public void importNode(GraphNode node) {
+		writeNode(node);
+		relationshipCache.commit();
+	}
+
+	public void importRelationships(Collection<GraphRelationship> relationships) {
+		writeRelationships(relationships, true);
+		relationshipCache.commit();
+	}
+
+	public void importRelationship(GraphRelationship relationship) {
+		writeRelationship(relationship, true);
+		relationshipCache.commit();
+	}
+
+	/**
+	 * Function to create deferred indexes and constraints and shut down the batch inserter.
+	 * Indexes will be populated during the shutdown.
+	 */
+	@Override
+	public void close() {
+		try {
+			for (GraphSchema schema : deferredSchemas)
+				createSchema(schema);
+		} finally {
+			inserter.shutdown();
+		}
+	}
+
+	/**
+	 * Function to print all relationships what are still waiting for a missing node, one per line:
+	 * missing key, start key, relationship type and end key, separated by tabs
+	 */
+	public void printUnresolvedRelationships(PrintStream out) {
+		unknownRelationships.forEach((key, relationship) -> out.println(
+				formatKey(key) + "\t" + formatKey(relationship.getStart()) + "\t"
+				+ relationship.getRelationship() + "\t" + formatKey(relationship.getEnd())));
+	}
+
+	public void printStatistics(PrintStream out) {
+		out.println( String.format("%d nodes has been created.\n%d nodes has been updated.\n%d relationships has been created.\n%d relationships has been updated.\n%d relationships has been unresolved.",
+				nodesCreated.getCount(), nodesUpdated.getCount(), relationshipsCreated.getCount(), relationshipsUpdated.getCount(),
+				unknownRelationships.getRelationshipsCount()) );
+		out.println( String.format("%d created and %d existing node keys.",
+				createdNodes.size(), existingNodes.size()) );
+		out.println( String.format("%d relationship cache hits.\n%d relationship cache misses.\n%d relationship cache clears.",
+				relationshipCache.getHits(), relationshipCache.getMisses(), relationshipCache.getClears()) );
+	}
+
+	private static String formatKey(GraphKey key) {
+		return key.getLabel() + "." + key.getProperty() + "=" + key.getValue();
+	}
+
+	private void createSchema(GraphSchema schema) {
+		GraphIndex index = schema.getIndex();
+		Label label = Label.label(index.getLabel());
+
+		try {
+			if (schema.isUnique()) {
+				if (verbose) {
+					System.out.println("Creating Constraint {index=" + index + "}");
+				}
+				inserter.createDeferredConstraint(label).assertPropertyIsUnique(index.getProperty()).create();
+			} else {
+				if (verbose) {
+					System.out.println("Creating Index {index=" + index + "}");
+				}
+				inserter.createDeferredSchemaIndex(label).on(index.getProperty()).create();
+			}
+		} catch (ConstraintViolationException e) {
+			// the index or the constraint already exists
+		}
+	}
+
+	private Long findNode(GraphKey key) {
+		Long id = createdNodes.get(key);
+		return null == id ? existingNodes.get(key) : id;
+	}
+
+	private void writeNode(GraphNode graphNode) {
+		if (graphNode.isBroken() || graphNode.isDeleted())
+			return;
+
+		GraphKey key = graphNode.getKey();
+
+		if (StringUtils.isEmpty(key.getLabel()))
+			throw new IllegalArgumentException("Node Key Label can not be empty");
+		if (StringUtils.isEmpty(key.getProperty()))
+			throw new IllegalArgumentException("Node Key Property can not be null");
+		if (null == key.getValue())
+			throw new IllegalArgumentException("Node Key Value can not be null");
+		if (GraphUtils.PROPERTY_NODE_ID.equals(key.getProperty()))
+			throw new IllegalArgumentException("Node id can not be used as an index: " + key);
+
+		if (verbose) {
+			System.out.println("Importing Node (" + key + ")");
+		}
+
+		Long id = findNode(key);
+		if (null == id) {
+			Set<GraphKey> indexes = graphNode.getIndexSet();
+			Set<String> labels = new HashSet<String>(graphNode.getLabels());
+			Map<String, Object> properties = new HashMap<String, Object>(graphNode.getProperties());
+
+			labels.add(key.getLabel());
+			properties.put(key.getProperty(), key.getValue());
+			for (GraphKey index : indexes) {
+				if (GraphUtils.PROPERTY_NODE_ID.equals(index.getProperty()))
+					throw new IllegalArgumentException("Node id can not be used as an index: " + index);
+
+				labels.add(index.getLabel());
+				properties.put(index.getProperty(), index.getValue());
+			}
+
+			id = inserter.createNode(properties, toLabels(labels));
+			nodesCreated.increment();
+
+			createdNodes.put(key, id);
+			writeRelationships(unknownRelationships.remove(key), false);
+			for (GraphKey index : indexes) {
+				createdNodes.putIfAbsent(index, id);
+				writeRelationships(unknownRelationships.remove(index), false);
+			}
+		} else {
+			nodesUpdated.increment();
+
+			Set<String> labels = new HashSet<String>();
+			for (Label label : inserter.getNodeLabels(id))
+				labels.add(label.name());
+			if (labels.addAll(graphNode.getLabels()))
+				inserter.setNodeLabels(id, toLabels(labels));
+
+			for (Map.Entry<String, Object> property : graphNode.getProperties().entrySet())
+				inserter.setNodeProperty(id, property.getKey(), property.getValue());
+		}
+	}
+
+	private static Label[] toLabels(Set<String> labels) {
+		return labels.stream().map(l -> Label.label(l)).toArray(Label[]::new);
+	}
+
+	private void writeRelationships(Collection<GraphRelationship> relationships, boolean storeUnknown) {
+		if (null != relationships)
+			for (GraphRelationship relationship : relationships)
+				writeRelationship(relationship, storeUnknown);
+	}
+
+	/**
+	 * Function to resolve a node id of a relationship end
+	 * @return node id or null if the node does not exists
+	 */
+	private Long resolveNode(GraphKey key) {
+		if (GraphUtils.PROPERTY_NODE_ID.equals(key.getProperty())) {
+			long id = (Long) key.getValue();
+			return inserter.nodeExists(id) && inserter.nodeHasLabel(id, Label.label(key.getLabel())) ? id : null;
+		}
+
+		return findNode(key);
+	}
+
+	/**
+	 * @return true if the node has existed before the import
+	 */
+	private boolean isExisting(GraphKey key) {
+		return GraphUtils.PROPERTY_NODE_ID.equals(key.getProperty()) || !createdNodes.containsKey(key);
+	}
+
+	private void writeRelationship(GraphRelationship graphRelationship, boolean storeUnknown) {
+		String relationshipName = graphRelationship.getRelationship();
+		GraphKey start = graphRelationship.getStart();
+		GraphKey end = graphRelationship.getEnd();
+
+		Long nodeStart = resolveNode(start);
+		if (null == nodeStart && storeUnknown) {
+			unknownRelationships.store(start, graphRelationship);
+
+			if (verbose)
+				System.out.println("Relationship Start Key (" + start + ") does not exists");
+		}
+
+		Long nodeEnd = resolveNode(end);
+		if (null == nodeEnd && storeUnknown) {
+			unknownRelationships.store(end, graphRelationship);
+
+			if (verbose)
+				System.out.println("Relationship End Key (" + end + ") does not exists");
+		}
+
+		if (null == nodeStart || null == nodeEnd)
+			return;
+
+		if (verbose)
+			System.out.println("Importing Relationship (" + start + ")-[" + relationshipName + "]->(" + end + ")");
+
+		Map<String, Object> properties = graphRelationship.getProperties();
+		boolean known = relationshipCache.contains(nodeStart, nodeEnd, relationshipName);
+		if (known && properties.isEmpty()) {
+			relationshipsUpdated.increment();
+			return;
+		}
+
+		RelationshipType type = RelationshipType.withName(relationshipName);
+		Long relationship = known || isExisting(start) && isExisting(end) ? findRelationship(nodeStart, nodeEnd, type) : null;
+		if (null == relationship) {
+			inserter.createRelationship(nodeStart, nodeEnd, type, properties);
+			relationshipsCreated.increment();
+		} else {
+			for (Map.Entry<String, Object> property : properties.entrySet())
+				inserter.setRelationshipProperty(relationship, property.getKey(), property.getValue());
+			relationshipsUpdated.increment();
+		}
+
+		relationshipCache.add(nodeStart, nodeEnd, relationshipName);
+	}
+
+	private Long findRelationship(long nodeStart, long nodeEnd, RelationshipType type) {
+		for (BatchRelationship relationship : inserter.getRelationships(nodeStart))
+			if (relationship.getStartNode() == nodeStart && relationship.getEndNode() == nodeEnd
+					&& relationship.getType().name().equals(type.name()))
+				return relationship.getId();
+
+		return null;
+	}
+}
@@ -4,18 +4,29 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang.StringUtils;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.ResourceIterable;
@@ -33,10 +44,24 @@ import org.researchgraph.graph.GraphKey;
 import org.researchgraph.graph.GraphNode;
 import org.researchgraph.graph.GraphRelationship;
 import org.researchgraph.graph.GraphSchema;
+import org.researchgraph.graph.GraphUtils;
 import org.researchgraph.graph.interfaces.GraphImporter;
+import org.researchgraph.metrics.Counter;
+import org.researchgraph.metrics.Histogram;
+import org.researchgraph.metrics.MetricRegistry;
 import org.researchgraph.neo4j.interfaces.ProcessNode;
+import org.researchgraph.neo4j.interfaces.ProcessProjection;
+import org.researchgraph.neo4j.interfaces.UnresolvedRelationshipStore;
 
 public class Neo4jDatabase implements GraphImporter {
+	public static final String METRIC_NODES_CREATED = "neo4j.nodes.created";
+	public static final String METRIC_NODES_UPDATED = "neo4j.nodes.updated";
+	public static final String METRIC_RELATIONSHIPS_CREATED = "neo4j.relationships.created";
+	public static final String METRIC_RELATIONSHIPS_UPDATED = "neo4j.relationships.updated";
+	public static final String METRIC_RELATIONSHIPS_UNRESOLVED = "neo4j.relationships.unresolved";
+	public static final String METRIC_IMPORT = "neo4j.import";
+	public static final String METRIC_COMMIT = "neo4j.commit";
+	
 	private static final String COLUMN_N = "n";
 	private static final String NEO4J_CONF = "/conf/neo4j.conf";
 	private static final String NEO4J_DB = "/data/databases/graph.db";
@@ -46,12 +71,17 @@ public class Neo4jDatabase implements GraphImporter {
 	//private Map<String, Index<Node>> indexes = new HashMap<String, Index<Node>>();
 	
 	private boolean verbose = false;
-	private long nodesCreated = 0;
-	private long nodesUpdated = 0;
-	private long relationshipsCreated = 0;
-	private long relationshipsUpdated = 0;
+	private Counter nodesCreated = new Counter();
+	private Counter nodesUpdated = new Counter();
+	private Counter relationshipsCreated = new Counter();
+	private Counter relationshipsUpdated = new Counter();
+	private Histogram importTime = new Histogram();
+	private Histogram commitTime = new Histogram();
+	
+	private NodeCache nodeCache = new NodeCache();
+	private RelationshipCache relationshipCache = new RelationshipCache();
 	
-	private final Map<String, List<GraphRelationship>> unknownRelationships = new HashMap<String, List<GraphRelationship>>();
+	private UnresolvedRelationshipStore unknownRelationships = new SpillingUnresolvedRelationshipStore();
 	private final Set<GraphSchema> importedSchemas = new HashSet<GraphSchema>();	
 	
 	public class Neo4jTransaction {
@@ -101,10 +131,14 @@ public class Neo4jDatabase implements GraphImporter {
 		}
 		
 		public void importIndex(Node node, GraphKey key) {
+			if (GraphUtils.PROPERTY_NODE_ID.equals(key.getProperty()))
+				throw new IllegalArgumentException("Node id can not be used as an index: " + key);
+			
 			node.addLabel(Label.label(key.getIndex().getLabel()));
 			node.setProperty(key.getIndex().getProperty(), key.getValue());
+			nodeCache.appendCreated(key, node.getId());
 			
-			importRelationships(unknownRelationships.remove(getRelationshipKey(key)), false); 
+			importRelationships(unknownRelationships.remove(key), false); 
 		}
 		
 		public void importIndexes(Node node, Collection<GraphKey> indexes) {
@@ -159,9 +193,11 @@ public class Neo4jDatabase implements GraphImporter {
 				node = createNode();
 				
 				importIndex(node, key);
+				// there was no node with this key, so the new node is the only one
+				nodeCache.putCreated(key, node.getId());
 				importIndexes(node, graphNode.getIndexSet());
 			} else  {
-				++nodesUpdated;
+				nodesUpdated.increment();
 			}
 				
 			importLabels(node, graphNode.getLabels());
@@ -177,7 +213,7 @@ public class Neo4jDatabase implements GraphImporter {
 			
 			List<Node> nodesStart = findAllNodes(start);
 			if (nodesStart.isEmpty() && storeUnknown) { 
-				storeUnknownRelationship(getRelationshipKey(start), graphRelationship);
+				storeUnknownRelationship(start, graphRelationship);
 				
 				if (verbose)
 					System.out.println("Relationship Start Key (" + start + ") does not exists");
@@ -185,7 +221,7 @@ public class Neo4jDatabase implements GraphImporter {
 			
 			List<Node> nodesEnd = findAllNodes(end);
 			if (nodesEnd.isEmpty() && storeUnknown) {
-				storeUnknownRelationship(getRelationshipKey(end), graphRelationship);
+				storeUnknownRelationship(end, graphRelationship);
 				
 				if (verbose)
 					System.out.println("Relationship End Key (" + end + ") does not exists");
@@ -209,6 +245,16 @@ public class Neo4jDatabase implements GraphImporter {
 			this.graphDb = graphDb;
 		}
 		
+		void endTransaction(boolean committed) {
+			if (committed) {
+				nodeCache.commit();
+				relationshipCache.commit();
+			} else {
+				nodeCache.rollback();
+				relationshipCache.rollback();
+			}
+		}
+		
 		Transaction beginTx() {
 			return graphDb.beginTx();
 		}
@@ -226,6 +272,14 @@ public class Neo4jDatabase implements GraphImporter {
 			return graphDb.findNodes(label);
 		}
 		
+		Node findNodeById(long id) {
+			try {
+				return graphDb.getNodeById(id);
+			} catch (NotFoundException e) {
+				return null;
+			}
+		}
+		
 		ConstraintDefinition createConstrant(Label label, String key) {
 			Schema schema = graphDb.schema();
 			
@@ -278,9 +332,22 @@ public class Neo4jDatabase implements GraphImporter {
 		}
 		
 		Node findAnyNode(GraphKey key) {
-			return findAnyNode(key.getLabel(), key.getProperty(), key.getValue()); 		
+			if (GraphUtils.PROPERTY_NODE_ID.equals(key.getProperty()))
+				return findNodeById(key.getLabel(), (Long) key.getValue());
+			
+			List<Node> nodes = findAllNodes(key);
+			return nodes.isEmpty() ? null : nodes.get(0); 		
 		}	
 		
+		Node findNodeById(String label, long id) {
+			try {
+				Node node = graphDb.getNodeById(id);
+				return node.hasLabel(Label.label(label)) ? node : null;
+			} catch (NotFoundException e) {
+				return null;
+			}
+		}
+		
 		List<Node> findAllNodes(Label label, String key, Object value) {
 			try (ResourceIterator<Node> hits = graphDb.findNodes(label, key, value)) {
 				List<Node> nodes = new ArrayList<Node>();
@@ -298,7 +365,32 @@ public class Neo4jDatabase implements GraphImporter {
 		}
 		
 		List<Node> findAllNodes(GraphKey key) {
-			return findAllNodes(key.getLabel(), key.getProperty(), key.getValue());
+			if (GraphUtils.PROPERTY_NODE_ID.equals(key.getProperty())) {
+				Node node = findNodeById(key.getLabel(), (Long) key.getValue());
+				return null == node ? Collections.emptyList() : Collections.singletonList(node);
+			}
+			
+			long[] ids = nodeCache.get(key);
+			if (null != ids) {
+				try {
+					List<Node> nodes = new ArrayList<Node>(ids.length);
+					for (long id : ids)
+						nodes.add(graphDb.getNodeById(id));
+					return nodes;
+				} catch (NotFoundException e) {
+					// the node has been deleted outside of this importer
+					nodeCache.remove(key);
+				}
+			}
+			
+			List<Node> nodes = findAllNodes(key.getLabel(), key.getProperty(), key.getValue());
+			
+			ids = new long[nodes.size()];
+			for (int i = 0; i < ids.length; ++i)
+				ids[i] = nodes.get(i).getId();
+			nodeCache.put(key, ids);
+			
+			return nodes;
 		}
 		
 		Relationship findRelationship(Iterable<Relationship> rels, long nodeId, Direction direction) {
@@ -311,7 +403,7 @@ public class Neo4jDatabase implements GraphImporter {
 				case OUTGOING:
 					if (rel.getEndNode().getId() == nodeId)
 						return rel;
-					
+					break;
 				case BOTH:
 					if (rel.getStartNode().getId() == nodeId || 
 					    rel.getEndNode().getId() == nodeId)
@@ -327,39 +419,58 @@ public class Neo4jDatabase implements GraphImporter {
 			return findRelationship(nodeStart.getRelationships(type, direction), nodeId, direction);
 		}
 		
+		/**
+		 * Function to find a relationship between two nodes, iterating relationships of the node with lower degree.
+		 * Degree of a dense node is read from its relationship group counters without iterating.
+		 */
 		Relationship findRelationship(Node nodeStart, Node endNode, 
 				RelationshipType type, Direction direction) {
-			return findRelationship(nodeStart, endNode.getId(), type, direction);
+			if (nodeStart.getDegree(type, direction) <= endNode.getDegree(type, direction.reverse()))
+				return findRelationship(nodeStart, endNode.getId(), type, direction);
+			else
+				return findRelationship(endNode, nodeStart.getId(), type, direction.reverse());
 		}
 		
 		Node createNode() {
-			++nodesCreated;
+			nodesCreated.increment();
 			
 			return graphDb.createNode();
 		}
 
 		Relationship createRelationship(Node nodeStart, Node nodeEnd, RelationshipType type) {
-			++relationshipsCreated;
+			relationshipsCreated.increment();
 			
 			return nodeStart.createRelationshipTo(nodeEnd, type);		
 		}
 
-		void storeUnknownRelationship(String key, GraphRelationship relationship) {
-			List<GraphRelationship> list = unknownRelationships.get(key);
-			if (null == list) 
-				unknownRelationships.put(key, list = new ArrayList<GraphRelationship>());
-			
-			list.add(relationship);
+		void storeUnknownRelationship(GraphKey key, GraphRelationship relationship) {
+			unknownRelationships.store(key, relationship);
 		}
 		
+		/**
+		 * Function to create a relationship if it does not exists and update its properties
+		 * @return relationship or null if the relationship is known to exist and there was nothing to update
+		 */
 		Relationship mergeRelationship(Node nodeStart, Node nodeEnd, RelationshipType type, 
 				Direction direction, Map<String, Object> properties) {
+			
+			// a known relationship without properties to update does not need to be found
+			boolean cached = Direction.OUTGOING == direction;
+			if (cached && (null == properties || properties.isEmpty()) 
+					&& relationshipCache.contains(nodeStart.getId(), nodeEnd.getId(), type.name())) {
+				relationshipsUpdated.increment();
+				
+				return null;
+			}
 
 			Relationship relationship = findRelationship(nodeStart, nodeEnd, type, direction);
 			if (null == relationship) 
 				relationship = createRelationship(nodeStart, nodeEnd, type);
 			else 
-				++relationshipsUpdated;
+				relationshipsUpdated.increment();
+			
+			if (cached)
+				relationshipCache.add(nodeStart.getId(), nodeEnd.getId(), type.name());
 			
 			importProperties(relationship, properties);
 			
@@ -367,7 +478,7 @@ public class Neo4jDatabase implements GraphImporter {
 		}
 	}
 	
-	private static File GetDbPath(final String folder) throws Neo4jException, IOException
+	static File GetDbPath(final String folder) throws Neo4jException, IOException
 	{
 		File db = new File(folder, NEO4J_DB);
 		if (!db.exists())
@@ -379,7 +490,7 @@ public class Neo4jDatabase implements GraphImporter {
 		return db;
 	}
 	
-	private static File GetConfPath(final String folder) throws Neo4jException
+	static File GetConfPath(final String folder) throws Neo4jException
 	{
 		File conf = new File(folder, NEO4J_CONF);
 		if (!conf.exists() || conf.isDirectory())
@@ -441,8 +552,8 @@ public class Neo4jDatabase implements GraphImporter {
 	    });
 	}
 	
-	private static String getRelationshipKey(GraphKey key) {
-		return key.getLabel() + "." + key.getProperty() + "." + key.getValue();
+	private static String formatKey(GraphKey key) {
+		return key.getLabel() + "." + key.getProperty() + "=" + key.getValue();
 	}
 	
 	public Neo4jDatabase(GraphDatabaseService graphDb) throws Exception {		
@@ -458,37 +569,136 @@ public class Neo4jDatabase implements GraphImporter {
 		this(readOnly ? getReadOnlyGraphDb(neo4jFolder) : getGraphDb( neo4jFolder ));
 	}
 		
+	/**
+	 * Function to shut down the database, what must not be used after that
+	 */
+	public void shutdown() {
+		tx.graphDb.shutdown();
+	}
+		
 	public boolean isVerbose() {
 		return verbose;
 	}
 
 	public long getNodesCreated() {
-		return nodesCreated;
+		return nodesCreated.getCount();
 	}
 
 	public long getNodesUpdated() {
-		return nodesUpdated;
+		return nodesUpdated.getCount();
 	}
 
 	public long getRelationshipsCreated() {
-		return relationshipsCreated;
+		return relationshipsCreated.getCount();
 	}
 
 	public long getRelationshipsUpdated() {
-		return relationshipsUpdated;
+		return relationshipsUpdated.getCount();
+	}
+	
+	/**
+	 * Sets the registry, what the import counters, import and commit times will be reported to.
+	 * Counts collected before will not be reported.
+	 * @param metrics
+	 */
+	public void setMetrics(MetricRegistry metrics) {
+		nodesCreated = metrics.counter(METRIC_NODES_CREATED);
+		nodesUpdated = metrics.counter(METRIC_NODES_UPDATED);
+		relationshipsCreated = metrics.counter(METRIC_RELATIONSHIPS_CREATED);
+		relationshipsUpdated = metrics.counter(METRIC_RELATIONSHIPS_UPDATED);
+		importTime = metrics.histogram(METRIC_IMPORT);
+		commitTime = metrics.histogram(METRIC_COMMIT);
+		metrics.gauge(METRIC_RELATIONSHIPS_UNRESOLVED, () -> unknownRelationships.getRelationshipsCount());
 	}
 
 	public void setVerbose(boolean verbose) {
 		this.verbose = verbose;
 	}
 	
+	public int getNodeCacheSize() {
+		return nodeCache.getCapacity();
+	}
+	
+	/**
+	 * Sets the maximum number of keys in the node cache, 0 disables the cache.
+	 * The cache content will be dropped.
+	 * @param nodeCacheSize
+	 */
+	public void setNodeCacheSize(int nodeCacheSize) {
+		this.nodeCache = new NodeCache(nodeCacheSize);
+	}
+	
+	public int getRelationshipCacheSize() {
+		return relationshipCache.getCapacity();
+	}
+	
+	/**
+	 * Sets the maximum number of relationships remembered as existing, 0 disables the cache.
+	 * The cache content will be dropped.
+	 * @param relationshipCacheSize
+	 */
+	public void setRelationshipCacheSize(int relationshipCacheSize) {
+		this.relationshipCache = new RelationshipCache(relationshipCacheSize);
+	}
+	
+	public UnresolvedRelationshipStore getUnresolvedRelationshipStore() {
+		return unknownRelationships;
+	}
+	
+	/**
+	 * Sets the store of relationships waiting for a missing node. 
+	 * The previous store will be closed, with all relationships it contains.
+	 * @param store
+	 */
+	public void setUnresolvedRelationshipStore(UnresolvedRelationshipStore store) {
+		unknownRelationships.close();
+		unknownRelationships = store;
+	}
+	
+	/**
+	 * Function to print all relationships what are still waiting for a missing node, one per line:
+	 * missing key, start key, relationship type and end key, separated by tabs
+	 */
+	public void printUnresolvedRelationships(PrintStream out) {
+		unknownRelationships.forEach((key, relationship) -> out.println(
+				formatKey(key) + "\t" + formatKey(relationship.getStart()) + "\t" 
+				+ relationship.getRelationship() + "\t" + formatKey(relationship.getEnd())));
+	}
+	
 	public void resetCounters() {
-		nodesCreated = nodesUpdated = relationshipsCreated = relationshipsUpdated = 0;
+		nodesCreated.reset();
+		nodesUpdated.reset();
+		relationshipsCreated.reset();
+		relationshipsUpdated.reset();
+		nodeCache.resetCounters();
+		relationshipCache.resetCounters();
 	}
 	
 	public void printStatistics(PrintStream out) {
-		out.println( String.format("%d nodes has been created.\n%d nodes has been updated.\n%d relationships has been created.\n%d relationships has been updated.\n%d relationships keys has been invalid.", 
-				nodesCreated, nodesUpdated, relationshipsCreated, relationshipsUpdated, unknownRelationships.size()) );
+		out.println( String.format("%d nodes has been created.\n%d nodes has been updated.\n%d relationships has been created.\n%d relationships has been updated.\n%d relationships has been unresolved.", 
+				nodesCreated.getCount(), nodesUpdated.getCount(), relationshipsCreated.getCount(), relationshipsUpdated.getCount(), 
+				unknownRelationships.getRelationshipsCount()) );
+		out.println( String.format("%d node cache hits.\n%d node cache misses.\n%d node cache evictions.", 
+				nodeCache.getHits(), nodeCache.getMisses(), nodeCache.getEvictions()) );
+		out.println( String.format("%d relationship cache hits.\n%d relationship cache misses.\n%d relationship cache clears.", 
+				relationshipCache.getHits(), relationshipCache.getMisses(), relationshipCache.getClears()) );
+	}
+	
+	/**
+	 * Function to count nodes with a label. The count is read from the count store without a scan.
+	 */
+	public long getNodesCount(String label) {
+		try ( Transaction t = tx.beginTx() ) 
+		{
+			String cypher = "MATCH (n:`" + label + "`) RETURN COUNT(n) AS n";
+			t.success();
+			try (Result result = tx.execute(cypher)) {
+				if ( result.hasNext() )
+					return (Long) result.next().get(COLUMN_N);
+			}
+		}
+		
+		return 0;
 	}
 	
 	public long getSourcesConnectionsCount(String source1, String source2) {
@@ -578,6 +788,201 @@ public class Neo4jDatabase implements GraphImporter {
 		enumrateAllNodesWithLabelAndProperty(label.toString(), property, processNode);
 	}
 	
+	/**
+	 * Function to enumerate nodes of a label in pages, every page is read in its own short transaction.
+	 * Ids of the labelled nodes are read by the label scan first, so only the labelled nodes are visited.
+	 * Nodes are passed in the order of their ids, as projections like by the label scan.
+	 * @param properties properties to read, nodes having none of them are skipped
+	 * @param fromId the first node id to scan, 0 to scan all nodes
+	 * @param pageSize number of labelled nodes read in a single transaction
+	 * @return the id to continue the scan from, what will be above the last labelled node 
+	 * if the scan has not been stopped by the callback
+	 */
+	public long enumrateAllNodesWithLabelAndProperties(String label, String[] properties, long fromId, int pageSize, 
+			ProcessProjection processProjection) throws Exception {
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Page size must be positive");
+		
+		Label l = Label.label(label);
+		long[] ids = getNodeIds(l);
+		int position = Arrays.binarySearch(ids, fromId);
+		if (position < 0)
+			position = -position - 1;
+		
+		for (int page = position; page < ids.length; page += pageSize) {
+			int end = (int) Math.min((long) page + pageSize, ids.length);
+			
+			try ( Transaction t = tx.beginTx() ) 
+			{
+				for (int i = page; i < end; ++i) {
+					NodeProjection projection = project(ids[i], l, properties);
+					if (null != projection && !processProjection.processProjection(projection)) {
+						t.success();
+						return ids[i] + 1;
+					}
+				}
+				
+				t.success();
+			}
+		}
+		
+		return ids.length > 0 ? Math.max(fromId, ids[ids.length - 1] + 1) : fromId;
+	}
+	
+	/**
+	 * Function to read a node found by the label scan in an earlier transaction
+	 * @return projection or null if the node has been deleted, lost the label or has none of the properties
+	 */
+	private NodeProjection project(long id, Label label, String[] properties) {
+		Node node = tx.findNodeById(id);
+		return null != node && node.hasLabel(label) ? NodeProjection.of(node, properties) : null;
+	}
+	
+	/**
+	 * Function to read ids of all nodes with a label by the label scan, in one transaction.
+	 * Only the ids are kept, 8 bytes per node.
+	 * @return sorted array of node ids
+	 */
+	private long[] getNodeIds(Label label) {
+		long[] ids = new long[1024];
+		int count = 0;
+		
+		try ( Transaction t = tx.beginTx() ) 
+		{
+			try (ResourceIterator<Node> nodes = tx.findNodes(label)) {
+				while (nodes.hasNext()) {
+					if (count == ids.length)
+						ids = Arrays.copyOf(ids, count * 2);
+					ids[count++] = nodes.next().getId();
+				}
+			}
+			
+			t.success();
+		}
+		
+		ids = Arrays.copyOf(ids, count);
+		Arrays.sort(ids);
+		
+		return ids;
+	}
+	
+	/**
+	 * Function to enumerate nodes by the label scan, without Cypher. Only the key and the requested
+	 * properties are read, nodes having none of the properties are skipped.
+	 * @param properties properties to read
+	 * @param processProjection consumer of projected nodes
+	 */
+	public void enumrateAllNodesWithLabelAndProperties(String label, String[] properties, ProcessProjection processProjection) throws Exception {
+		try ( Transaction t = tx.beginTx() ) 
+		{
+			try (ResourceIterator<Node> nodes = tx.findNodes(Label.label(label))) {
+				while (nodes.hasNext()) {
+					NodeProjection projection = NodeProjection.of(nodes.next(), properties);
+					if (null != projection && !processProjection.processProjection(projection))
+						break;
+				}
+			}
+			
+			t.success();
+		}
+	}
+	
+	/**
+	 * Function to enumerate nodes by several threads. Ids of the labelled nodes are read by the label scan
+	 * and split into partitions of the page size, every thread takes the next partition and reads it in its own transaction.
+	 * Nodes are passed in no particular order, as projections like by the label scan. If the consumer 
+	 * returns false, all threads will stop after the current node.
+	 * @param threads number of threads
+	 * @param pageSize number of labelled nodes in a partition
+	 * @param processProjection thread safe consumer of projected nodes
+	 * @return number of passed nodes
+	 * @throws Exception the first exception thrown by any thread
+	 */
+	public long enumrateAllNodesWithLabelAndPropertiesParallel(String label, String[] properties, int threads, int pageSize, 
+			ProcessProjection processProjection) throws Exception {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Number of threads must be positive");
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Page size must be positive");
+		
+		Label l = Label.label(label);
+		long[] ids = getNodeIds(l);
+		AtomicInteger next = new AtomicInteger();
+		AtomicLong count = new AtomicLong();
+		AtomicBoolean stopped = new AtomicBoolean();
+		
+		// threads are never interrupted, because an interrupt closes Neo4j store files
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		try {
+			for (int i = 0; i < threads; ++i)
+				futures.add(executor.submit(() -> {
+					try {
+						int page;
+						// the counter can pass the end only by the number of threads times the page size
+						while (!stopped.get() && (page = next.getAndAdd(pageSize)) < ids.length && page >= 0) {
+							int end = (int) Math.min((long) page + pageSize, ids.length);
+							
+							try ( Transaction t = tx.beginTx() ) 
+							{
+								for (int position = page; position < end && !stopped.get(); ++position) {
+									NodeProjection projection = project(ids[position], l, properties);
+									if (null != projection) {
+										count.incrementAndGet();
+										if (!processProjection.processProjection(projection))
+											stopped.set(true);
+									}
+								}
+								
+								t.success();
+							}
+						}
+					} catch (Exception e) {
+						stopped.set(true);
+						throw e;
+					}
+					
+					return null;
+				}));
+		} finally {
+			executor.shutdown();
+		}
+		
+		Exception error = null;
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (null == error)
+					error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+		
+		if (null != error)
+			throw error;
+		
+		return count.get();
+	}
+	
+	/**
+	 * Function to enumerate nodes having any of the property values, using the property index.
+	 * A node will be passed once for every value it matches.
+	 */
+	public void enumrateAllNodesWithLabelAndPropertyValues(String label, String property, Collection<?> values, ProcessNode processNode) throws Exception {
+		try ( Transaction t = tx.beginTx() ) 
+		{
+			Label l = Label.label(label);
+			boolean next = true;
+			for (Iterator<?> it = values.iterator(); next && it.hasNext(); ) 
+				try (ResourceIterator<Node> nodes = tx.graphDb.findNodes(l, property, it.next())) {
+					while (next && nodes.hasNext()) 
+						next = processNode.processNode(tx, nodes.next());
+				}
+			
+			t.success();
+		}
+	}
+	
 	public ConstraintDefinition createConstrant(Label label, String key) {
 		ConstraintDefinition def = null;
 		
@@ -613,7 +1018,8 @@ public class Neo4jDatabase implements GraphImporter {
 	}
 	
 	public void importGraph(Graph graph) {
-	
+		long started = System.nanoTime();
+		
 		// schema can not be imported in the same transaction as nodes and relationships
 		try ( Transaction t = tx.beginTx() ) 
 		{
@@ -622,13 +1028,12 @@ public class Neo4jDatabase implements GraphImporter {
 			t.success();
 		}
 		
-		try ( Transaction t = tx.beginTx() ) 
-		{
-			tx.importNodes(graph.getNodes());
-			tx.importRelationships(graph.getRelationships(), true);
-			
-			t.success();
-		}
+		write(t -> {
+			t.importNodes(graph.getNodes());
+			t.importRelationships(graph.getRelationships(), true);
+		});
+		
+		importTime.time(started);
 	}
 	
 	public void importSchemas(Collection<GraphSchema> schemas) {
@@ -651,39 +1056,42 @@ public class Neo4jDatabase implements GraphImporter {
 	
 	public void importNodes(Collection<GraphNode> nodes) {
 		// Import nodes
-		try ( Transaction t = tx.beginTx() ) 
-		{
-			tx.importNodes(nodes);		
-				
-			t.success();
-		}
+		write(t -> t.importNodes(nodes));
 	}
 
 	public void importNode(GraphNode node) {
 		// Import nodes
-		try ( Transaction t = tx.beginTx() ) 
-		{
-			tx.importNode(node);		
-				
-			t.success();
-		}
+		write(t -> t.importNode(node));
 	}
 	
 	public void importRelationships(Collection<GraphRelationship> relationships) {
-		try ( Transaction t = tx.beginTx() ) 
-		{		
-			tx.importRelationships(relationships, true);
-			
-			t.success();
-		}
+		write(t -> t.importRelationships(relationships, true));
 	}
 	
 	public void importRelationship(GraphRelationship relationship) {
-		try ( Transaction t = tx.beginTx() ) 
-		{		
-			tx.importRelationship(relationship, true);
+		write(t -> t.importRelationship(relationship, true));
+	}
+	
+	/**
+	 * Function to run an import in a write transaction. 
+	 * Cached changes will be dropped if the transaction fails to commit.
+	 */
+	private void write(Consumer<Neo4jTransaction> work) {
+		boolean committed = false;
+		long committing;
+		try {
+			try ( Transaction t = tx.beginTx() ) 
+			{
+				work.accept(tx);
+				
+				t.success();
+				committing = System.nanoTime();
+			}
 			
-			t.success();
+			committed = true;
+			commitTime.time(committing);
+		} finally {
+			tx.endTransaction(committed);
 		}
 	}
 	
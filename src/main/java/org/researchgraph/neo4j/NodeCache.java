@@ -0,0 +1,141 @@
+package org.researchgraph.neo4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.researchgraph.graph.GraphKey;
+
+/**
+ * A bounded LRU cache of node ids found by a key
+ *
+ * Entries stored during the current transaction are remembered, so they can be
+ * dropped if the transaction is rolled back, because a lookup can see nodes
+ * created by the transaction itself. Lookups which did not find any node
+ * are never cached, because the node can be created later.
+ *
+ * The class is not thread safe.
+ */
+
+public class NodeCache {
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	private final int capacity;
+	private final Map<GraphKey, long[]> nodes;
+	private final List<GraphKey> changed = new ArrayList<GraphKey>();
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	@SuppressWarnings("serial")
+	public NodeCache(int capacity) {
+		this.capacity = capacity;
+		this.nodes = new LinkedHashMap<GraphKey, long[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<GraphKey, long[]> eldest) {
+				if (size() > NodeCache.this.capacity) {
+					++evictions;
+					return true;
+				}
+
+				return false;
+			}
+		};
+	}
+
+	public NodeCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int size() {
+		return nodes.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void resetCounters() {
+		hits = misses = evictions = 0;
+	}
+
+	/**
+	 * Function to get node ids of a key
+	 * @param key GraphKey
+	 * @return array of node ids or null if the key is not cached
+	 */
+	public long[] get(GraphKey key) {
+		if (0 == capacity)
+			return null;
+
+		long[] ids = nodes.get(key);
+		if (null == ids)
+			++misses;
+		else
+			++hits;
+
+		return ids;
+	}
+
+	/**
+	 * Function to store all node ids found by a key
+	 */
+	public void put(GraphKey key, long[] ids) {
+		if (0 != capacity && ids.length > 0) {
+			nodes.put(key, ids);
+			changed.add(key);
+		}
+	}
+
+	/**
+	 * Function to store a node created by the current transaction, what is the only node with this key
+	 */
+	public void putCreated(GraphKey key, long id) {
+		if (0 != capacity) {
+			nodes.put(key, new long[] { id });
+			changed.add(key);
+		}
+	}
+
+	/**
+	 * Function to add a node created by the current transaction to an already cached key
+	 */
+	public void appendCreated(GraphKey key, long id) {
+		long[] ids = nodes.get(key);
+		if (null != ids) {
+			ids = Arrays.copyOf(ids, ids.length + 1);
+			ids[ids.length - 1] = id;
+
+			nodes.put(key, ids);
+			changed.add(key);
+		}
+	}
+
+	public void remove(GraphKey key) {
+		nodes.remove(key);
+	}
+
+	public void commit() {
+		changed.clear();
+	}
+
+	public void rollback() {
+		for (GraphKey key : changed)
+			nodes.remove(key);
+		changed.clear();
+	}
+}
@@ -0,0 +1,75 @@
+package org.researchgraph.neo4j;
+
+import java.util.Arrays;
+
+import org.neo4j.graphdb.Node;
+import org.researchgraph.graph.GraphUtils;
+
+/**
+ * A class to hold the id and the key of a scanned node with the values of the scanned properties
+ *
+ * Projections are immutable and can be passed between threads and transactions, 
+ * unlike nodes, which are bound to the transaction they were read in.
+ */
+
+public class NodeProjection {
+	private final long nodeId;
+	private final Object key;
+	private final Object[] values;
+
+	public NodeProjection(long nodeId, Object key, Object... values) {
+		this.nodeId = nodeId;
+		this.key = key;
+		this.values = values.clone();
+	}
+
+	/**
+	 * Function to read the key and the properties of a node
+	 * @return projection or null if the node has none of the properties
+	 */
+	public static NodeProjection of(Node node, String... properties) {
+		Object[] values = new Object[properties.length];
+		boolean found = false;
+		for (int i = 0; i < properties.length; ++i)
+			found |= null != (values[i] = node.getProperty(properties[i], null));
+
+		if (!found)
+			return null;
+
+		return new NodeProjection(node.getId(), node.getProperty(GraphUtils.PROPERTY_KEY, null), values);
+	}
+
+	public long getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * @return key of the node or null if the node has no key
+	 */
+	public Object getKey() {
+		return key;
+	}
+
+	/**
+	 * @return value of the first scanned property
+	 */
+	public Object getValue() {
+		return values.length > 0 ? values[0] : null;
+	}
+
+	/**
+	 * @return value of a scanned property, in the order the properties were requested, or null if the node has no such property
+	 */
+	public Object getValue(int index) {
+		return values[index];
+	}
+
+	public int getValuesCount() {
+		return values.length;
+	}
+
+	@Override
+	public String toString() {
+		return "NodeProjection [nodeId=" + nodeId + ", key=" + key + ", values=" + Arrays.toString(values) + "]";
+	}
+}
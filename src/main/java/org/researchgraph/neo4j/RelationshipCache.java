@@ -0,0 +1,131 @@
+package org.researchgraph.neo4j;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of relationships known to exist, identified by start node id, end node id and type
+ *
+ * The end node id and the type index are packed into a single long, what leaves 48 bits
+ * for the node id and 16 bits for up to 65535 relationship types.
+ * When the set reaches its capacity, it is cleared and filled again.
+ *
+ * Relationships added during the current transaction are remembered, so they can be
+ * dropped if the transaction is rolled back.
+ *
+ * The class is not thread safe.
+ */
+
+public class RelationshipCache {
+	public static final int DEFAULT_CAPACITY = 1000000;
+
+	private static final int TYPE_BITS = 16;
+	private static final int MAX_TYPES = (1 << TYPE_BITS) - 1;
+	private static final long MAX_NODE_ID = (1L << (Long.SIZE - TYPE_BITS)) - 1;
+
+	private final int capacity;
+	private final LongPairSet relationships = new LongPairSet();
+	private final Map<String, Integer> types = new HashMap<String, Integer>();
+	private long[] changed = new long[64];
+	private int changedCount = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long clears = 0;
+
+	public RelationshipCache(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public RelationshipCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int size() {
+		return relationships.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getClears() {
+		return clears;
+	}
+
+	public void resetCounters() {
+		hits = misses = clears = 0;
+	}
+
+	/**
+	 * Function to test if a relationship is known to exist
+	 */
+	public boolean contains(long startId, long endId, String type) {
+		long key = getKey(endId, type);
+		if (0 == capacity || -1 == key)
+			return false;
+
+		if (relationships.contains(startId, key)) {
+			++hits;
+			return true;
+		}
+
+		++misses;
+		return false;
+	}
+
+	/**
+	 * Function to store a relationship found or created by the current transaction
+	 */
+	public void add(long startId, long endId, String type) {
+		long key = getKey(endId, type);
+		if (0 == capacity || -1 == key)
+			return;
+
+		if (relationships.size() >= capacity) {
+			relationships.clear();
+			++clears;
+		}
+
+		if (relationships.add(startId, key)) {
+			if (changedCount + 2 > changed.length)
+				changed = Arrays.copyOf(changed, changed.length * 2);
+
+			changed[changedCount++] = startId;
+			changed[changedCount++] = key;
+		}
+	}
+
+	public void commit() {
+		changedCount = 0;
+	}
+
+	public void rollback() {
+		for (int i = 0; i < changedCount; i += 2)
+			relationships.remove(changed[i], changed[i + 1]);
+		changedCount = 0;
+	}
+
+	private long getKey(long endId, String type) {
+		if (endId > MAX_NODE_ID)
+			return -1;
+
+		Integer index = types.get(type);
+		if (null == index) {
+			if (types.size() >= MAX_TYPES)
+				return -1;
+
+			types.put(type, index = types.size());
+		}
+
+		return (endId << TYPE_BITS) | index;
+	}
+}
@@ -0,0 +1,585 @@
+package org.researchgraph.neo4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import org.researchgraph.graph.GraphKey;
+import org.researchgraph.graph.GraphRelationship;
+import org.researchgraph.neo4j.interfaces.UnresolvedRelationshipStore;
+
+/**
+ * A store of unresolved relationships, what keeps a limited number of relationships in memory
+ * and spills the rest into a file
+ *
+ * The file is append only and mapped into memory in segments of fixed size. Every record
+ * contains a 64 bit hash of the missing key and the offset of the previous record with the
+ * same hash, so records of a key are found by following a chain from the last one. Only the
+ * offset of the last record of every hash is kept in memory. Removed records are marked,
+ * but never reused.
+ *
+ * The file is created in the first spill and deleted when the store is closed.
+ * The class is not thread safe.
+ */
+
+public class SpillingUnresolvedRelationshipStore implements UnresolvedRelationshipStore {
+	public static final int DEFAULT_MEMORY_LIMIT = 100000;
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final long NONE = -1;
+
+	// record: state, key hash, previous record offset, payload length, payload
+	private static final int HEADER_SIZE = 1 + 8 + 8 + 4;
+	private static final byte STATE_END = 0;
+	private static final byte STATE_REMOVED = 1;
+	private static final byte STATE_STORED = 2;
+
+	private static final byte KEY_START = 0;
+	private static final byte KEY_END = 1;
+
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_STRING = 1;
+	private static final byte VALUE_LONG = 2;
+	private static final byte VALUE_INTEGER = 3;
+	private static final byte VALUE_DOUBLE = 4;
+	private static final byte VALUE_FLOAT = 5;
+	private static final byte VALUE_BOOLEAN = 6;
+	private static final byte VALUE_SHORT = 7;
+	private static final byte VALUE_BYTE = 8;
+	private static final byte VALUE_CHARACTER = 9;
+	private static final byte VALUE_ARRAY = 10;
+	private static final byte VALUE_SERIALIZED = 11;
+
+	private final int memoryLimit;
+	private final File folder;
+	private final int segmentSize;
+	private final MemoryUnresolvedRelationshipStore memory = new MemoryUnresolvedRelationshipStore();
+	private final HashIndex index = new HashIndex();
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+	private File file;
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+	private int position;
+	private long spilledCount = 0;
+	private long spilledTotal = 0;
+	private long spilledBytes = 0;
+
+	/**
+	 * @param memoryLimit maximum number of relationships kept in memory
+	 * @param folder folder for the spill file, or null to use the default temporary folder
+	 * @param segmentSize size of a single mapped segment of the file, what limits the size of one record
+	 */
+	public SpillingUnresolvedRelationshipStore(int memoryLimit, File folder, int segmentSize) {
+		if (memoryLimit < 0)
+			throw new IllegalArgumentException("Memory limit can not be negative");
+		if (segmentSize <= HEADER_SIZE)
+			throw new IllegalArgumentException("Segment size is too small");
+
+		this.memoryLimit = memoryLimit;
+		this.folder = folder;
+		this.segmentSize = segmentSize;
+	}
+
+	public SpillingUnresolvedRelationshipStore(int memoryLimit, File folder) {
+		this(memoryLimit, folder, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public SpillingUnresolvedRelationshipStore() {
+		this(DEFAULT_MEMORY_LIMIT, null);
+	}
+
+	public int getMemoryLimit() {
+		return memoryLimit;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return number of relationships currently stored in the file
+	 */
+	public long getSpilledCount() {
+		return spilledCount;
+	}
+
+	/**
+	 * @return number of relationships ever written to the file
+	 */
+	public long getSpilledTotal() {
+		return spilledTotal;
+	}
+
+	/**
+	 * @return number of bytes ever written to the file
+	 */
+	public long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	@Override
+	public long getRelationshipsCount() {
+		return memory.getRelationshipsCount() + spilledCount;
+	}
+
+	@Override
+	public void store(GraphKey key, GraphRelationship relationship) {
+		if (memory.getRelationshipsCount() < memoryLimit)
+			memory.store(key, relationship);
+		else
+			spill(key, relationship);
+	}
+
+	@Override
+	public List<GraphRelationship> remove(GraphKey key) {
+		List<GraphRelationship> relationships = memory.remove(key);
+		if (0 == spilledCount)
+			return relationships;
+
+		long hash = hash(key);
+		long offset = index.get(hash);
+		if (NONE == offset)
+			return relationships;
+
+		List<GraphRelationship> found = new ArrayList<GraphRelationship>();
+		List<GraphKey> collisionKeys = new ArrayList<GraphKey>(0);
+		List<GraphRelationship> collisions = new ArrayList<GraphRelationship>(0);
+
+		while (NONE != offset) {
+			MappedByteBuffer segment = segments.get((int) (offset / segmentSize));
+			int recordPosition = (int) (offset % segmentSize);
+			long previous = segment.getLong(recordPosition + 1 + 8);
+
+			if (STATE_STORED == segment.get(recordPosition)) {
+				byte[] bytes = new byte[segment.getInt(recordPosition + 1 + 8 + 8)];
+				readBytes(segment, recordPosition + HEADER_SIZE, bytes);
+
+				GraphRelationship relationship = decode(bytes);
+				GraphKey recordKey = getKey(bytes, relationship);
+				if (key.equals(recordKey))
+					found.add(relationship);
+				else {
+					// a different key with the same hash, it will be written again
+					collisionKeys.add(recordKey);
+					collisions.add(relationship);
+				}
+
+				segment.put(recordPosition, STATE_REMOVED);
+				--spilledCount;
+			}
+
+			offset = previous;
+		}
+
+		index.put(hash, NONE);
+
+		for (int i = collisions.size() - 1; i >= 0; --i)
+			spill(collisionKeys.get(i), collisions.get(i));
+
+		if (found.isEmpty())
+			return relationships;
+
+		// the chain is read from the last record
+		Collections.reverse(found);
+		if (null != relationships)
+			found.addAll(0, relationships);
+
+		return found;
+	}
+
+	@Override
+	public void forEach(BiConsumer<GraphKey, GraphRelationship> consumer) {
+		memory.forEach(consumer);
+
+		for (MappedByteBuffer segment : segments) {
+			int recordPosition = 0;
+			while (recordPosition + HEADER_SIZE <= segmentSize) {
+				byte state = segment.get(recordPosition);
+				if (STATE_END == state)
+					break;
+
+				int length = segment.getInt(recordPosition + 1 + 8 + 8);
+				if (STATE_STORED == state) {
+					byte[] bytes = new byte[length];
+					readBytes(segment, recordPosition + HEADER_SIZE, bytes);
+
+					GraphRelationship relationship = decode(bytes);
+					consumer.accept(getKey(bytes, relationship), relationship);
+				}
+
+				recordPosition += HEADER_SIZE + length;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		memory.close();
+		segments.clear();
+		index.clear();
+		spilledCount = 0;
+
+		try {
+			if (null != channel)
+				channel.close();
+			if (null != randomAccessFile)
+				randomAccessFile.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (null != file)
+				file.delete();
+
+			channel = null;
+			randomAccessFile = null;
+			file = null;
+		}
+	}
+
+	private void spill(GraphKey key, GraphRelationship relationship) {
+		byte[] bytes = encode(key.equals(relationship.getStart()) ? KEY_START : KEY_END, relationship);
+		int size = HEADER_SIZE + bytes.length;
+		if (size > segmentSize)
+			throw new IllegalArgumentException("Relationship is too large to be stored: " + size + " bytes");
+
+		try {
+			if (segments.isEmpty() || position + size > segmentSize)
+				addSegment();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to spill unresolved relationships", e);
+		}
+
+		int segmentIndex = segments.size() - 1;
+		MappedByteBuffer segment = segments.get(segmentIndex);
+		long hash = hash(key);
+
+		segment.put(position, STATE_STORED);
+		segment.putLong(position + 1, hash);
+		segment.putLong(position + 1 + 8, index.get(hash));
+		segment.putInt(position + 1 + 8 + 8, bytes.length);
+		ByteBuffer buffer = segment.duplicate();
+		buffer.position(position + HEADER_SIZE);
+		buffer.put(bytes);
+
+		index.put(hash, (long) segmentIndex * segmentSize + position);
+		position += size;
+
+		++spilledCount;
+		++spilledTotal;
+		spilledBytes += size;
+	}
+
+	private void addSegment() throws IOException {
+		if (null == channel) {
+			file = File.createTempFile("unresolved-", ".dat", folder);
+			file.deleteOnExit();
+
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			channel = randomAccessFile.getChannel();
+		}
+
+		// mapping beyond the end of the file will extend it with zeros, what marks the end of records
+		segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize));
+		position = 0;
+	}
+
+	private static void readBytes(MappedByteBuffer segment, int offset, byte[] bytes) {
+		ByteBuffer buffer = segment.duplicate();
+		buffer.position(offset);
+		buffer.get(bytes);
+	}
+
+	private static GraphKey getKey(byte[] bytes, GraphRelationship relationship) {
+		return KEY_START == bytes[0] ? relationship.getStart() : relationship.getEnd();
+	}
+
+	private byte[] encode(byte key, GraphRelationship relationship) {
+		payload.reset();
+
+		try (DataOutputStream out = new DataOutputStream(payload)) {
+			out.writeByte(key);
+			writeString(out, relationship.getRelationship());
+			writeKey(out, relationship.getStart());
+			writeKey(out, relationship.getEnd());
+
+			Map<String, Object> properties = relationship.getProperties();
+			out.writeInt(properties.size());
+			for (Map.Entry<String, Object> property : properties.entrySet()) {
+				writeString(out, property.getKey());
+				writeValue(out, property.getValue());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return payload.toByteArray();
+	}
+
+	private static GraphRelationship decode(byte[] bytes) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			in.readByte();
+			String relationship = readString(in);
+			GraphKey start = readKey(in);
+			GraphKey end = readKey(in);
+
+			int count = in.readInt();
+			Map<String, Object> properties = new HashMap<String, Object>();
+			for (int i = 0; i < count; ++i) {
+				String name = readString(in);
+				properties.put(name, readValue(in));
+			}
+
+			return new GraphRelationship(relationship, start, end, properties);
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalStateException("Unable to read unresolved relationship", e);
+		}
+	}
+
+	private static void writeKey(DataOutputStream out, GraphKey key) throws IOException {
+		writeString(out, key.getLabel());
+		writeString(out, key.getProperty());
+		writeValue(out, key.getValue());
+	}
+
+	private static GraphKey readKey(DataInputStream in) throws IOException, ClassNotFoundException {
+		String label = readString(in);
+		String property = readString(in);
+		return new GraphKey(label, property, readValue(in));
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (null == string)
+			out.writeInt(-1);
+		else {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (null == value)
+			out.writeByte(VALUE_NULL);
+		else if (value instanceof String) {
+			out.writeByte(VALUE_STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Long) {
+			out.writeByte(VALUE_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(VALUE_INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Double) {
+			out.writeByte(VALUE_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(VALUE_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(VALUE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Short) {
+			out.writeByte(VALUE_SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(VALUE_BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Character) {
+			out.writeByte(VALUE_CHARACTER);
+			out.writeChar((Character) value);
+		} else if (value instanceof Object[]) {
+			Object[] array = (Object[]) value;
+			out.writeByte(VALUE_ARRAY);
+			writeString(out, array.getClass().getComponentType().getName());
+			out.writeInt(array.length);
+			for (Object element : array)
+				writeValue(out, element);
+		} else if (value instanceof Serializable) {
+			out.writeByte(VALUE_SERIALIZED);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+				objects.writeObject(value);
+			}
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+		} else
+			throw new IllegalArgumentException("Unable to store property value of type: " + value.getClass());
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+		byte type = in.readByte();
+		switch (type) {
+		case VALUE_NULL:
+			return null;
+		case VALUE_STRING:
+			return readString(in);
+		case VALUE_LONG:
+			return in.readLong();
+		case VALUE_INTEGER:
+			return in.readInt();
+		case VALUE_DOUBLE:
+			return in.readDouble();
+		case VALUE_FLOAT:
+			return in.readFloat();
+		case VALUE_BOOLEAN:
+			return in.readBoolean();
+		case VALUE_SHORT:
+			return in.readShort();
+		case VALUE_BYTE:
+			return in.readByte();
+		case VALUE_CHARACTER:
+			return in.readChar();
+		case VALUE_ARRAY: {
+			Class<?> componentType = Class.forName(readString(in));
+			Object[] array = (Object[]) Array.newInstance(componentType, in.readInt());
+			for (int i = 0; i < array.length; ++i)
+				array[i] = readValue(in);
+			return array;
+		}
+		case VALUE_SERIALIZED: {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+				return objects.readObject();
+			}
+		}
+		default:
+			throw new IOException("Unknown value type: " + type);
+		}
+	}
+
+	private static long hash(GraphKey key) {
+		long h = mix(hash(key.getLabel()));
+		h = mix(h ^ hash(key.getProperty()));
+		h = mix(h ^ (key.getValue() instanceof String ? hash((String) key.getValue()) : (long) Objects.hashCode(key.getValue())));
+
+		// the smallest value marks an empty slot of the index
+		return Long.MIN_VALUE == h ? h + 1 : h;
+	}
+
+	private static long hash(String string) {
+		if (null == string)
+			return 0;
+
+		// FNV-1a over characters
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < string.length(); ++i) {
+			h ^= string.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * An open addressing hash table from key hash to offset of the last record
+	 */
+	private static class HashIndex {
+		private static final long EMPTY = Long.MIN_VALUE;
+		private static final int INITIAL_CAPACITY = 1024;
+
+		private long[] hashes;
+		private long[] offsets;
+		private int size;
+
+		HashIndex() {
+			clear();
+		}
+
+		long get(long hash) {
+			int mask = hashes.length - 1;
+			for (int slot = (int) hash & mask; EMPTY != hashes[slot]; slot = (slot + 1) & mask)
+				if (hashes[slot] == hash)
+					return offsets[slot];
+
+			return NONE;
+		}
+
+		void put(long hash, long offset) {
+			int mask = hashes.length - 1;
+			int slot = (int) hash & mask;
+			while (EMPTY != hashes[slot]) {
+				if (hashes[slot] == hash) {
+					offsets[slot] = offset;
+					return;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+
+			hashes[slot] = hash;
+			offsets[slot] = offset;
+
+			if (++size * 2 > hashes.length)
+				rehash(hashes.length * 2);
+		}
+
+		void clear() {
+			hashes = new long[INITIAL_CAPACITY];
+			offsets = new long[INITIAL_CAPACITY];
+			Arrays.fill(hashes, EMPTY);
+			size = 0;
+		}
+
+		private void rehash(int capacity) {
+			long[] oldHashes = hashes;
+			long[] oldOffsets = offsets;
+
+			hashes = new long[capacity];
+			offsets = new long[capacity];
+			Arrays.fill(hashes, EMPTY);
+
+			int mask = capacity - 1;
+			for (int i = 0; i < oldHashes.length; ++i)
+				if (EMPTY != oldHashes[i]) {
+					int slot = (int) oldHashes[i] & mask;
+					while (EMPTY != hashes[slot])
+						slot = (slot + 1) & mask;
+
+					hashes[slot] = oldHashes[i];
+					offsets[slot] = oldOffsets[i];
+				}
+		}
+	}
+}
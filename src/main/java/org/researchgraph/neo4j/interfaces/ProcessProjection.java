@@ -0,0 +1,12 @@
+package org.researchgraph.neo4j.interfaces;
+
+import org.researchgraph.neo4j.NodeProjection;
+
+/**
+ * A consumer of scanned nodes. A consumer of a parallel scan will be called 
+ * from several threads at once and must be thread safe.
+ */
+
+public interface ProcessProjection {
+	boolean processProjection(NodeProjection projection) throws Exception;
+}
@@ -0,0 +1,34 @@
+package org.researchgraph.neo4j.interfaces;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.researchgraph.graph.GraphKey;
+import org.researchgraph.graph.GraphRelationship;
+
+/**
+ * A store of relationships waiting for a missing node
+ *
+ * Every relationship is stored under the key of the node what does not exist yet.
+ * When the node is created, all relationships stored under its key are removed and imported.
+ */
+
+public interface UnresolvedRelationshipStore extends AutoCloseable {
+	void store(GraphKey key, GraphRelationship relationship);
+
+	/**
+	 * Function to remove all relationships waiting for a node
+	 * @return list of relationships or null if there is no relationship stored under this key
+	 */
+	List<GraphRelationship> remove(GraphKey key);
+
+	long getRelationshipsCount();
+
+	/**
+	 * Function to pass all stored relationships to a consumer, with the missing key of each one
+	 */
+	void forEach(BiConsumer<GraphKey, GraphRelationship> consumer);
+
+	@Override
+	void close();
+}
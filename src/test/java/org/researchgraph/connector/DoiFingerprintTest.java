@@ -0,0 +1,29 @@
+package org.researchgraph.connector;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests of the DOI fingerprint
+ *
+ * Expected values are CONV(LEFT(MD5(LOWER(doi)), 15), 16, 10) of the DOI stored in a latin1 column.
+ */
+
+public class DoiFingerprintTest {
+	@Test
+	public void testAscii() {
+		assertEquals(656777107103673137L, DoiFingerprint.of("10.1000/182"));
+	}
+
+	@Test
+	public void testCaseInsensitive() {
+		assertEquals(DoiFingerprint.of("10.1000/abc"), DoiFingerprint.of("10.1000/ABC"));
+	}
+
+	@Test
+	public void testLatin1() {
+		// en dash and right single quote are 0x96 and 0x92 in MySQL latin1
+		assertEquals(663928199792317321L, DoiFingerprint.of("10.1000/ABC\u2013D\u00e9j\u00e0\u2019s"));
+	}
+}
@@ -0,0 +1,147 @@
+package org.researchgraph.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of the scan join
+ *
+ * The doi_resolution table is replaced by rows in memory, served by a fake connection.
+ */
+
+public class WorkScannerTest {
+	private static final int BATCH_SIZE = 10;
+
+	private final List<Object[]> works = new ArrayList<Object[]>();
+
+	@Test
+	public void testCaseVariants() throws Exception {
+		addWork(1, "10.1000/other", true);
+		addWork(2, "10.1000/Abc", true);
+		addWork(3, "10.1000/created", false);
+
+		ReferenceTable references = new ReferenceTable();
+		references.add("10.1000/ABC", 1);
+		references.add("10.1000/abc", 2);
+		references.add("10.1000/created", 3);
+		references.add("10.1000/unknown", 4);
+		int[] entries = references.getSortedEntries();
+
+		Map<String, Work> scanned = scan(references, entries);
+
+		assertEquals(4, scanned.size());
+		assertTrue(scanned.get("10.1000/ABC").isResolved());
+		assertSame(scanned.get("10.1000/ABC"), scanned.get("10.1000/abc"));
+		assertEquals(2L, (long) scanned.get("10.1000/abc").getResolutionId());
+		assertTrue(scanned.get("10.1000/created").isCreated());
+		assertFalse(scanned.get("10.1000/created").isResolved());
+		assertFalse(scanned.get("10.1000/unknown").isCreated());
+	}
+
+	@Test
+	public void testPages() throws Exception {
+		int count = WorkScanner.PAGE_SIZE * 2 + 1;
+		ReferenceTable references = new ReferenceTable();
+		for (int i = 1; i <= count; ++i) {
+			addWork(i, "10.1000/" + i, true);
+			if (0 == i % 2)
+				references.add("10.1000/" + i, i);
+		}
+		int[] entries = references.getSortedEntries();
+
+		Map<String, Work> scanned = scan(references, entries);
+
+		assertEquals(references.size(), scanned.size());
+		for (Work work : scanned.values())
+			assertTrue(work.isResolved());
+	}
+
+	/**
+	 * @return works by the referenced DOI, every position must be passed once
+	 */
+	private Map<String, Work> scan(ReferenceTable references, int[] entries) throws Exception {
+		Map<String, Work> scanned = new HashMap<String, Work>();
+		try (WorkResolver resolver = new WorkResolver(createConnection(), BATCH_SIZE)) {
+			resolver.scanWorks(references, entries, 0, entries.length, (work, position) -> {
+				assertNull("Position passed twice", scanned.put(references.getDoi(entries[position]), work));
+			});
+		}
+
+		return scanned;
+	}
+
+	private void addWork(long id, String doi, boolean resolved) {
+		Date date = new Date(0);
+		works.add(new Object[] { id, doi, "source", "source url", "url", "title", 2000, date, 
+				resolved ? date : null, DoiFingerprint.of(doi) });
+	}
+
+	private Connection createConnection() {
+		return proxy(Connection.class, (method, args) -> 
+			"prepareStatement".equals(method) ? createStatement((String) args[0]) : null);
+	}
+
+	private PreparedStatement createStatement(String sql) {
+		Map<Integer, Object> parameters = new HashMap<Integer, Object>();
+		return proxy(PreparedStatement.class, (method, args) -> {
+			if (method.startsWith("set"))
+				parameters.put((Integer) args[0], args[1]);
+			else if ("executeQuery".equals(method)) {
+				List<Object[]> rows = new ArrayList<Object[]>();
+				// authors are not needed by the tests
+				if (sql.contains("FROM doi_resolution WHERE id>?"))
+					for (Object[] work : works)
+						if ((Long) work[0] > ((Number) parameters.get(1)).longValue() && rows.size() < (Integer) parameters.get(2))
+							rows.add(work);
+
+				return createResultSet(rows);
+			}
+
+			return null;
+		});
+	}
+
+	private static ResultSet createResultSet(List<Object[]> rows) {
+		int[] row = { -1 };
+		Object[] last = { null };
+		return proxy(ResultSet.class, (method, args) -> {
+			if ("next".equals(method))
+				return ++row[0] < rows.size();
+			if ("wasNull".equals(method))
+				return null == last[0];
+			if (method.startsWith("get"))
+				return last[0] = rows.get(row[0])[(Integer) args[0] - 1];
+
+			return null;
+		});
+	}
+
+	private interface Handler {
+		Object invoke(String method, Object[] args) throws Exception;
+	}
+
+	private static <T> T proxy(Class<T> type, Handler handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			Object result = handler.invoke(method.getName(), args);
+			if (null == result && method.getReturnType().isPrimitive() && void.class != method.getReturnType())
+				throw new UnsupportedOperationException(method.getName());
+
+			return result;
+		}));
+	}
+}
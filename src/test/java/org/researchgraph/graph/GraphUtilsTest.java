@@ -0,0 +1,85 @@
+package org.researchgraph.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+/**
+ * Tests of the DOI extraction
+ *
+ * The scanner must extract the same DOI as the regular expression it has replaced,
+ * what is kept here as the reference.
+ */
+
+public class GraphUtilsTest {
+	private static final Pattern REFERENCE_DOI = Pattern.compile("\\d+(\\.\\d+)*/.+$");
+	private static final long SEED = 20161018;
+	private static final int CORPUS_SIZE = 200000;
+	private static final String[] PARTS = { "doi:", "DOI:", "dx.doi.org/", "doi.org/", "http://", "https://", 
+			"https://doi.org/", "http://dx.doi.org/", "://", "10", "10.", "1000", "10.1000", "1", "2.3", ".", "..", 
+			"/", "//", "abc", "x", " ", "\u00e9", "\n", "\r", "\r\n", "\u0085", "\u2028", "\u2029" };
+
+	/**
+	 * The extraction before the scanner has been introduced
+	 */
+	private static String extractDoiByRegex(String str) {
+		if (StringUtils.isNotEmpty(str)) {
+			int pos = str.indexOf("doi:");
+			if (pos >= 0) 
+				str = str.substring(pos + "doi:".length());
+			
+			pos = str.indexOf("dx.doi.org/");
+			if (pos >= 0) 
+				str = str.substring(pos + "dx.doi.org/".length());
+			
+			Matcher matcher = REFERENCE_DOI.matcher(str);
+			if (matcher.find()) 
+				return matcher.group();
+		}
+		
+		return null;
+	}
+	
+	private static void assertSameDoi(String str) {
+		assertEquals("DOI of \"" + StringEscapeUtils.escapeJava(str) + "\"", extractDoiByRegex(str), GraphUtils.extractDoi(str));
+	}
+	
+	@Test
+	public void testKnownDois() {
+		assertEquals("10.1000/xyz123", GraphUtils.extractDoi("10.1000/xyz123"));
+		assertEquals("10.1000/182", GraphUtils.extractDoi("doi:10.1000/182"));
+		assertEquals("10.1000/182", GraphUtils.extractDoi("https://doi.org/10.1000/182"));
+		assertEquals("10.5555/12345678", GraphUtils.extractDoi("http://dx.doi.org/10.5555/12345678"));
+		assertEquals("10.1/abc", GraphUtils.extractDoi("see 10.1/abc\r\n"));
+		assertEquals("2/b", GraphUtils.extractDoi("1/a\u20282/b"));
+		assertNull(GraphUtils.extractDoi("10.1000/"));
+		assertNull(GraphUtils.extractDoi("1/a\n\n"));
+		assertNull(GraphUtils.extractDoi(""));
+		assertNull(GraphUtils.extractDoi(null));
+	}
+	
+	@Test
+	public void testSameAsRegex() {
+		Random random = new Random(SEED);
+		
+		for (int i = 0; i < CORPUS_SIZE; ++i) {
+			StringBuilder str = new StringBuilder();
+			for (int parts = random.nextInt(8); parts > 0; --parts) {
+				if (0 == random.nextInt(20))
+					// any character, mostly printable ASCII
+					str.append((char) (0 == random.nextInt(4) ? random.nextInt(0x3000) : 32 + random.nextInt(95)));
+				else
+					str.append(PARTS[random.nextInt(PARTS.length)]);
+			}
+			
+			assertSameDoi(str.toString());
+		}
+	}
+}